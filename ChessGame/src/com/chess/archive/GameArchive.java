@@ -0,0 +1,193 @@
+package com.chess.archive;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.Move;
+import com.chess.pgn.PgnGame;
+import com.chess.pgn.PgnReader;
+import com.chess.pgn.PgnWriter;
+import com.chess.pgn.San;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Finished games appended to a PGN file, plus a {@link PositionIndex} from every position
+ * they reached to the game. A game's id is its byte offset in the PGN file, so ids grow with
+ * time and a game can be read back with a single seek.
+ * <p>
+ * The PGN file is forced to disk with every game but index entries are buffered, so a crash
+ * can lose the newest entries. {@link #open} re-indexes any games past the last indexed id.
+ */
+public class GameArchive implements Closeable {
+    public static final String GAMES_FILE = "games.pgn";
+    public static final String INDEX_DIRECTORY = "index";
+
+    private final Path gamesFile;
+    private final FileChannel games;
+    private final PositionIndex index;
+
+    private GameArchive(Path gamesFile, FileChannel games, PositionIndex index) {
+        this.gamesFile = gamesFile;
+        this.games = games;
+        this.index = index;
+    }
+
+    public static GameArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path gamesFile = directory.resolve(GAMES_FILE);
+        FileChannel games = FileChannel.open(gamesFile, StandardOpenOption.CREATE,
+                                             StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        PositionIndex index = null;
+        try {
+            index = PositionIndex.open(directory.resolve(INDEX_DIRECTORY));
+            reindexTail(gamesFile, games.size(), index);
+            return new GameArchive(gamesFile, games, index);
+        } catch (IOException e) {
+            if (index != null) {
+                index.close();
+            }
+            games.close();
+            throw e;
+        }
+    }
+
+    /** Indexes the games written after the last one the index knows about. */
+    private static void reindexTail(Path gamesFile, long size, PositionIndex index) throws IOException {
+        long last = index.getLastGameId();
+        long start = Math.max(last, 0);
+        if (start >= size) {
+            return;
+        }
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(gamesFile, StandardOpenOption.READ)) {
+            channel.position(start);
+            try (PgnReader reader = new PgnReader(Channels.newInputStream(channel), start)) {
+                PgnGame game;
+                while ((game = reader.next()) != null) {
+                    long[] keys = replay(game);
+                    if (game.getOffset() <= last || keys == null) {
+                        continue;
+                    }
+                    for (long key : keys) {
+                        index.add(key, game.getOffset());
+                    }
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            index.flush();
+            System.out.println("[ARCHIVE] Re-indexed " + count + " games missing from the index");
+        }
+    }
+
+    /** Zobrist keys of every position the game passed through, or null if it does not replay. */
+    private static long[] replay(PgnGame game) {
+        ChessBoard board = game.createStartingBoard();
+        long[] keys = new long[game.getMoveCount() + 1];
+        keys[0] = board.getZobristKey();
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = San.parse(board, game.getMoves().get(i));
+            if (move == Move.NONE || !board.makeMove(Move.fromRow(move), Move.fromCol(move),
+                                                     Move.toRow(move), Move.toCol(move), Move.promotion(move))) {
+                return null;
+            }
+            keys[i + 1] = board.getZobristKey();
+        }
+        return keys;
+    }
+
+    /**
+     * Appends a game and indexes every position it passed through. Returns the game id,
+     * or -1 if the moves do not replay legally.
+     */
+    public synchronized long add(PgnGame game) throws IOException {
+        long[] keys = replay(game);
+        if (keys == null) {
+            return -1;
+        }
+
+        StringWriter text = new StringWriter();
+        new PgnWriter(text).write(game);
+        long id = games.size();
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            games.write(bytes);
+        }
+        games.force(false);
+
+        for (long key : keys) {
+            index.add(key, id);
+        }
+        return id;
+    }
+
+    /** Writes buffered index entries as a run; {@link #add} also does so once enough pile up. */
+    public synchronized void flush() throws IOException {
+        index.flush();
+    }
+
+    public PgnGame read(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(gamesFile, StandardOpenOption.READ)) {
+            channel.position(id);
+            try (PgnReader reader = new PgnReader(Channels.newInputStream(channel), id)) {
+                return reader.next();
+            }
+        }
+    }
+
+    /** Ids of up to limit games that reached the board's position, newest first. */
+    public long[] findGames(ChessBoard board, int limit) {
+        return index.lookup(board.getZobristKey(), limit);
+    }
+
+    public PositionIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            index.close();
+        } finally {
+            games.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameArchive <directory> [fen|--compact] [limit]");
+            System.exit(1);
+        }
+        ChessBoard.setLoggingEnabled(false);
+        try (GameArchive archive = GameArchive.open(Paths.get(args[0]))) {
+            if (args.length > 1 && args[1].equals("--compact")) {
+                long start = System.nanoTime();
+                archive.index.compact();
+                System.out.printf("[ARCHIVE] Compacted %d entries in %.1f s%n",
+                                  archive.index.getEntryCount(), (System.nanoTime() - start) / 1e9);
+                return;
+            }
+            ChessBoard board = args.length > 1 ? ChessBoard.fromFen(args[1]) : new ChessBoard();
+            int limit = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+            long start = System.nanoTime();
+            long[] ids = archive.findGames(board, limit);
+            double millis = (System.nanoTime() - start) / 1e6;
+            for (long id : ids) {
+                PgnGame game = archive.read(id);
+                System.out.println("[ARCHIVE] #" + id + " " + game.getTag("White") + " - " + game.getTag("Black") +
+                                   " " + game.getResult() + " (" + game.getMoveCount() + " plies)");
+            }
+            System.out.printf("[ARCHIVE] %d games in %.2f ms over %d positions in %d runs%n",
+                              ids.length, millis, archive.index.getEntryCount(), archive.index.getRunCount());
+        }
+    }
+}
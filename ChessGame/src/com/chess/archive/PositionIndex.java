@@ -0,0 +1,539 @@
+package com.chess.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Persistent map from position key to the ids of games that reached it. New entries are
+ * buffered in memory and flushed as immutable sorted run files; runs are merged in tiers
+ * of {@link #FANOUT} so the number of files stays logarithmic in the index size. Lookups
+ * binary-search every memory-mapped run without taking a lock.
+ * <p>
+ * A mapped file cannot be deleted on every platform, so merged runs are not removed when
+ * they are replaced. Each run records the lowest sequence it replaces, and {@link #open}
+ * deletes any run covered by another before mapping anything.
+ */
+public class PositionIndex implements Closeable {
+    public static final int FANOUT = 8;
+    public static final int FLUSH_THRESHOLD = 1 << 18;
+
+    static final int MAGIC = 0x43484958; // "CHIX"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    static final int ENTRY_SIZE = 16;
+
+    // Each mapping covers 2^26 entries (1 GB), well inside the 2 GB limit of a single map
+    private static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final Path directory;
+    private volatile List<Run> runs;
+    private long nextSequence;
+
+    private long[] bufferKeys = new long[1024];
+    private long[] bufferIds = new long[1024];
+    private int bufferSize;
+
+    private static class Run {
+        final Path file;
+        final long sequence;
+        final int level;
+        final long count;
+        // Runs with sequences from here up to this run's own were merged into it
+        final long replacesFrom;
+        final long lastGameId;
+        final FileChannel channel;
+        final MappedByteBuffer[] segments;
+
+        Run(Path file, long sequence, int level, long count, long replacesFrom, long lastGameId,
+            FileChannel channel, MappedByteBuffer[] segments) {
+            this.file = file;
+            this.sequence = sequence;
+            this.level = level;
+            this.count = count;
+            this.replacesFrom = replacesFrom;
+            this.lastGameId = lastGameId;
+            this.channel = channel;
+            this.segments = segments;
+        }
+
+        boolean replaces(Run other) {
+            return other.sequence >= replacesFrom && other.sequence < sequence;
+        }
+
+        long key(long index) {
+            return segments[(int) (index >>> SEGMENT_BITS)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE);
+        }
+
+        long gameId(long index) {
+            return segments[(int) (index >>> SEGMENT_BITS)].getLong((int) (index & SEGMENT_MASK) * ENTRY_SIZE + 8);
+        }
+
+        long lowerBound(long key) {
+            long low = 0;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (key(mid) < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private PositionIndex(Path directory, List<Run> runs, long nextSequence) {
+        this.directory = directory;
+        this.runs = runs;
+        this.nextSequence = nextSequence;
+    }
+
+    public static PositionIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "run-*.idx.tmp")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        // Read every header first: a replaced run is deleted before it is ever mapped
+        List<Run> headers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "run-*.idx")) {
+            for (Path file : files) {
+                headers.add(openRun(file, false));
+            }
+        }
+        List<Run> runs = new ArrayList<>();
+        long nextSequence = 0;
+        int removed = 0;
+        for (Run run : headers) {
+            nextSequence = Math.max(nextSequence, run.sequence + 1);
+            boolean replaced = false;
+            for (Run other : headers) {
+                replaced |= other.replaces(run);
+            }
+            if (replaced) {
+                Files.deleteIfExists(run.file);
+                removed++;
+            } else {
+                runs.add(openRun(run.file, true));
+            }
+        }
+        runs.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        if (removed > 0) {
+            System.out.println("[INDEX] Deleted " + removed + " merged runs");
+        }
+        long entries = 0;
+        for (Run run : runs) {
+            entries += run.count;
+        }
+        System.out.println("[INDEX] Opened " + directory + " (" + runs.size() + " runs, " + entries + " entries)");
+        return new PositionIndex(directory, Collections.unmodifiableList(runs), nextSequence);
+    }
+
+    /** Opens a run, mapping its entries only if asked to; the header is always read. */
+    private static Run openRun(Path file, boolean map) throws IOException {
+        String name = file.getFileName().toString();
+        long sequence;
+        try {
+            sequence = Long.parseLong(name.substring(4, name.length() - 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad run file name: " + file);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a valid index run: " + file);
+            }
+            int level = header.getInt(8);
+            long count = header.getLong(16);
+            long replacesFrom = header.getLong(24);
+            long lastGameId = header.getLong(32);
+            if (count < 0 || HEADER_SIZE + count * ENTRY_SIZE != channel.size()) {
+                throw new IOException("Truncated index run: " + file);
+            }
+            if (!map) {
+                channel.close();
+                return new Run(file, sequence, level, count, replacesFrom, lastGameId, null, null);
+            }
+            int segmentCount = (int) ((count + SEGMENT_MASK) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long first = (long) s << SEGMENT_BITS;
+                long entries = Math.min(count - first, 1L << SEGMENT_BITS);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          HEADER_SIZE + first * ENTRY_SIZE, entries * ENTRY_SIZE);
+            }
+            return new Run(file, sequence, level, count, replacesFrom, lastGameId, channel, segments);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Buffers one entry; call {@link #flush()} to make buffered entries durable. */
+    public void add(long key, long gameId) throws IOException {
+        boolean full;
+        synchronized (this) {
+            if (bufferSize == bufferKeys.length) {
+                bufferKeys = Arrays.copyOf(bufferKeys, bufferSize * 2);
+                bufferIds = Arrays.copyOf(bufferIds, bufferSize * 2);
+            }
+            bufferKeys[bufferSize] = key;
+            bufferIds[bufferSize] = gameId;
+            bufferSize++;
+            full = bufferSize >= FLUSH_THRESHOLD;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes buffered entries as a new level-0 run, then merges any tier that has filled up.
+     * Only one thread should write to an index; lookups may run concurrently.
+     */
+    public void flush() throws IOException {
+        long[] keys;
+        long[] ids;
+        int size;
+        synchronized (this) {
+            if (bufferSize == 0) {
+                return;
+            }
+            keys = Arrays.copyOf(bufferKeys, bufferSize);
+            ids = Arrays.copyOf(bufferIds, bufferSize);
+            size = bufferSize;
+        }
+        sort(keys, ids, 0, size - 1);
+        Run run = writeRun(0, -1, new ArrayCursor(keys, ids, size));
+        synchronized (this) {
+            // Entries added while the run was written stay buffered
+            System.arraycopy(bufferKeys, size, bufferKeys, 0, bufferSize - size);
+            System.arraycopy(bufferIds, size, bufferIds, 0, bufferSize - size);
+            bufferSize -= size;
+            List<Run> updated = new ArrayList<>(runs);
+            updated.add(run);
+            runs = Collections.unmodifiableList(updated);
+        }
+        mergeFullTiers();
+    }
+
+    private void mergeFullTiers() throws IOException {
+        while (true) {
+            List<Run> current = runs;
+            int n = current.size();
+            if (n < FANOUT) {
+                return;
+            }
+            int level = current.get(n - 1).level;
+            for (int i = n - FANOUT; i < n; i++) {
+                if (current.get(i).level != level) {
+                    return;
+                }
+            }
+            merge(current.subList(n - FANOUT, n), level + 1);
+        }
+    }
+
+    /** Merges every run into one. Cheap lookups afterwards, at the cost of rewriting the index. */
+    public void compact() throws IOException {
+        flush();
+        List<Run> current = runs;
+        if (current.size() > 1) {
+            int level = 0;
+            for (Run run : current) {
+                level = Math.max(level, run.level);
+            }
+            merge(current, level + 1);
+        }
+    }
+
+    /**
+     * Inputs are always the oldest-to-newest tail of the run list, and only one thread
+     * writes, so the merged run replaces every sequence from its first input up to its own.
+     */
+    private void merge(List<Run> inputs, int level) throws IOException {
+        Run merged = writeRun(level, inputs.get(0).sequence, new MergeCursor(inputs));
+        synchronized (this) {
+            List<Run> updated = new ArrayList<>(runs);
+            updated.removeAll(inputs);
+            updated.add(merged);
+            updated.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+            runs = Collections.unmodifiableList(updated);
+        }
+        // Closing the channel keeps the mappings that running lookups may still read; the
+        // files stay until the next open, since a mapped file cannot always be deleted
+        for (Run run : inputs) {
+            run.channel.close();
+        }
+    }
+
+    /** Writes a run; replacesFrom is the first sequence it supersedes, or -1 for none. */
+    private Run writeRun(int level, long replacesFrom, Cursor cursor) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = nextSequence++;
+        }
+        if (replacesFrom < 0) {
+            replacesFrom = sequence;
+        }
+        Path file = directory.resolve(String.format("run-%012d.idx", sequence));
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        long count = 0;
+        long lastGameId = -1;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(level);
+            out.writeInt(0);
+            out.writeLong(0);
+            out.writeLong(replacesFrom);
+            out.writeLong(0);
+            long lastKey = 0;
+            long lastId = -1;
+            while (cursor.next()) {
+                long key = cursor.key();
+                long id = cursor.gameId();
+                if (count > 0 && key == lastKey && id == lastId) {
+                    continue;
+                }
+                out.writeLong(key);
+                out.writeLong(id);
+                lastKey = key;
+                lastId = id;
+                lastGameId = Math.max(lastGameId, id);
+                count++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, count), 16);
+            channel.write(ByteBuffer.allocate(8).putLong(0, lastGameId), 32);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return openRun(file, true);
+    }
+
+    /**
+     * Returns up to limit distinct game ids that reached the position, newest (highest id) first.
+     */
+    public long[] lookup(long key, int limit) {
+        List<Run> current = runs;
+        long[] found = new long[16];
+        int size = 0;
+        for (Run run : current) {
+            long start = run.lowerBound(key);
+            long end = start;
+            while (end < run.count && run.key(end) == key) {
+                end++;
+            }
+            // Ids within a key are ascending, so the newest games are at the end of the range
+            for (long i = end - 1; i >= start && i >= end - limit; i--) {
+                if (size == found.length) {
+                    found = Arrays.copyOf(found, size * 2);
+                }
+                found[size++] = run.gameId(i);
+            }
+        }
+        synchronized (this) {
+            for (int i = 0; i < bufferSize; i++) {
+                if (bufferKeys[i] == key) {
+                    if (size == found.length) {
+                        found = Arrays.copyOf(found, size * 2);
+                    }
+                    found[size++] = bufferIds[i];
+                }
+            }
+        }
+        Arrays.sort(found, 0, size);
+        long[] result = new long[Math.min(size, limit)];
+        int count = 0;
+        for (int i = size - 1; i >= 0 && count < result.length; i--) {
+            if (count == 0 || result[count - 1] != found[i]) {
+                result[count++] = found[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /** The highest game id added so far, flushed or not, or -1 if the index is empty. */
+    public long getLastGameId() {
+        long last = -1;
+        for (Run run : runs) {
+            last = Math.max(last, run.lastGameId);
+        }
+        synchronized (this) {
+            for (int i = 0; i < bufferSize; i++) {
+                last = Math.max(last, bufferIds[i]);
+            }
+        }
+        return last;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    public long getEntryCount() {
+        long entries = 0;
+        for (Run run : runs) {
+            entries += run.count;
+        }
+        synchronized (this) {
+            return entries + bufferSize;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (Run run : runs) {
+            run.channel.close();
+        }
+    }
+
+    private interface Cursor {
+        boolean next() throws IOException;
+        long key();
+        long gameId();
+    }
+
+    private static class ArrayCursor implements Cursor {
+        private final long[] keys;
+        private final long[] ids;
+        private final int size;
+        private int index = -1;
+
+        ArrayCursor(long[] keys, long[] ids, int size) {
+            this.keys = keys;
+            this.ids = ids;
+            this.size = size;
+        }
+
+        public boolean next() {
+            return ++index < size;
+        }
+
+        public long key() {
+            return keys[index];
+        }
+
+        public long gameId() {
+            return ids[index];
+        }
+    }
+
+    /** K-way merge over sorted runs; FANOUT is small, so a linear scan for the minimum is enough. */
+    private static class MergeCursor implements Cursor {
+        private final Run[] inputs;
+        private final long[] positions;
+        private int current = -1;
+
+        MergeCursor(List<Run> inputs) {
+            this.inputs = inputs.toArray(new Run[0]);
+            this.positions = new long[this.inputs.length];
+            Arrays.fill(positions, -1);
+        }
+
+        public boolean next() {
+            if (current >= 0) {
+                positions[current]++;
+            } else {
+                Arrays.fill(positions, 0);
+            }
+            current = -1;
+            for (int i = 0; i < inputs.length; i++) {
+                if (positions[i] >= inputs[i].count) {
+                    continue;
+                }
+                if (current < 0 || compare(i, current) < 0) {
+                    current = i;
+                }
+            }
+            return current >= 0;
+        }
+
+        private int compare(int a, int b) {
+            int cmp = Long.compare(inputs[a].key(positions[a]), inputs[b].key(positions[b]));
+            return cmp != 0 ? cmp : Long.compare(inputs[a].gameId(positions[a]), inputs[b].gameId(positions[b]));
+        }
+
+        public long key() {
+            return inputs[current].key(positions[current]);
+        }
+
+        public long gameId() {
+            return inputs[current].gameId(positions[current]);
+        }
+    }
+
+    private static int compare(long[] keys, long[] ids, int i, int j) {
+        int cmp = Long.compare(keys[i], keys[j]);
+        return cmp != 0 ? cmp : Long.compare(ids[i], ids[j]);
+    }
+
+    private static void swap(long[] keys, long[] ids, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+
+    private static void sort(long[] keys, long[] ids, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    for (int j = i; j > low && compare(keys, ids, j - 1, j) > 0; j--) {
+                        swap(keys, ids, j - 1, j);
+                    }
+                }
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            if (compare(keys, ids, mid, low) < 0) swap(keys, ids, mid, low);
+            if (compare(keys, ids, high, low) < 0) swap(keys, ids, high, low);
+            if (compare(keys, ids, high, mid) < 0) swap(keys, ids, high, mid);
+            swap(keys, ids, mid, high - 1);
+            int pivot = high - 1;
+            int i = low;
+            int j = high - 1;
+            while (true) {
+                while (compare(keys, ids, ++i, pivot) < 0) { }
+                while (j > low && compare(keys, ids, --j, pivot) > 0) { }
+                if (i >= j) {
+                    break;
+                }
+                swap(keys, ids, i, j);
+            }
+            swap(keys, ids, i, high - 1);
+            if (i - low < high - i) {
+                sort(keys, ids, low, i - 1);
+                low = i + 1;
+            } else {
+                sort(keys, ids, i + 1, high);
+                high = i - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.chess.book;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.Move;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Read-only view of a book file written by {@link OpeningBookBuilder}.
+ * Entries are looked up straight from the mapped file, nothing is copied onto the heap.
+ */
+public class OpeningBook implements AutoCloseable {
+    static final int MAGIC = 0x4348424B; // "CHBK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    private OpeningBook(FileChannel channel, MappedByteBuffer buffer, int entryCount) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+    }
+
+    public static OpeningBook open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a valid book file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a valid book file: " + path);
+            }
+            long entries = buffer.getLong(8);
+            if (entries < 0 || HEADER_SIZE + entries * ENTRY_SIZE != size) {
+                throw new IOException("Truncated book file: " + path);
+            }
+            System.out.println("[BOOK] Opened " + path + " (" + entries + " entries)");
+            return new OpeningBook(channel, buffer, (int) entries);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Copies the book moves for the given position into the caller's arrays,
+     * heaviest first, and returns how many were written.
+     */
+    public int probe(long key, int[] moves, int[] weights) {
+        int index = lowerBound(key);
+        int count = 0;
+        while (index < entryCount && count < moves.length && keyAt(index) == key) {
+            int offset = HEADER_SIZE + index * ENTRY_SIZE;
+            moves[count] = buffer.getInt(offset + 8);
+            weights[count] = buffer.getInt(offset + 12);
+            count++;
+            index++;
+        }
+        return count;
+    }
+
+    public int probe(ChessBoard board, int[] moves, int[] weights) {
+        return probe(board.getZobristKey(), moves, weights);
+    }
+
+    public boolean contains(ChessBoard board) {
+        long key = board.getZobristKey();
+        int index = lowerBound(key);
+        return index < entryCount && keyAt(index) == key;
+    }
+
+    /**
+     * Picks a book move at random in proportion to its weight, or {@link Move#NONE}
+     * when the position is out of book.
+     */
+    public int pickMove(ChessBoard board, Random random) {
+        long key = board.getZobristKey();
+        int first = lowerBound(key);
+        long total = 0;
+        int last = first;
+        while (last < entryCount && keyAt(last) == key) {
+            total += buffer.getInt(HEADER_SIZE + last * ENTRY_SIZE + 12);
+            last++;
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = first; i < last; i++) {
+            int offset = HEADER_SIZE + i * ENTRY_SIZE;
+            pick -= buffer.getInt(offset + 12);
+            if (pick < 0) {
+                return buffer.getInt(offset + 8);
+            }
+        }
+        return buffer.getInt(HEADER_SIZE + (last - 1) * ENTRY_SIZE + 8);
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * ENTRY_SIZE);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
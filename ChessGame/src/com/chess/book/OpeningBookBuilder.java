@@ -0,0 +1,289 @@
+package com.chess.book;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.Move;
+import com.chess.pgn.PgnGame;
+import com.chess.pgn.PgnReader;
+import com.chess.pgn.San;
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Compiles a game collection into a book file. Every (position, move) pair seen in the
+ * first {@code maxPly} plies is collected into flat primitive arrays, sorted by position
+ * key and collapsed into one weighted entry.
+ */
+public class OpeningBookBuilder {
+    public static final int DEFAULT_MAX_PLY = 24;
+    public static final int DEFAULT_MIN_WEIGHT = 2;
+
+    private final int maxPly;
+    private final int minWeight;
+
+    private long[] keys = new long[1 << 16];
+    private int[] moves = new int[1 << 16];
+    private int size;
+    private int gameCount;
+    private int rejectedGames;
+
+    public OpeningBookBuilder(int maxPly, int minWeight) {
+        this.maxPly = maxPly;
+        this.minWeight = minWeight;
+    }
+
+    /**
+     * Replays one game through the rules engine and records its opening moves.
+     * Returns false if the game contains an illegal move; moves before it are kept.
+     */
+    public boolean addGame(int[] gameMoves, int length) {
+        ChessBoard board = new ChessBoard();
+        int plies = Math.min(length, maxPly);
+        for (int i = 0; i < plies; i++) {
+            int move = gameMoves[i];
+            long key = board.getZobristKey();
+            if (!board.makeMove(Move.fromRow(move), Move.fromCol(move), Move.toRow(move), Move.toCol(move),
+                                Move.promotion(move))) {
+                rejectedGames++;
+                gameCount++;
+                return false;
+            }
+            add(key, move);
+            if (board.isGameOver()) {
+                break;
+            }
+        }
+        gameCount++;
+        return true;
+    }
+
+    /**
+     * Reads games in coordinate notation, one game per line ("e2e4 e7e5 g1f3 ...").
+     * Blank lines and lines starting with '#' are skipped.
+     */
+    public void addCoordinateGames(Path path) throws IOException {
+        int[] buffer = new int[maxPly];
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int length = 0;
+                boolean valid = true;
+                for (String token : line.split("\\s+")) {
+                    if (length == buffer.length) {
+                        break;
+                    }
+                    int move = Move.parseUci(token);
+                    if (move == Move.NONE) {
+                        valid = false;
+                        break;
+                    }
+                    buffer[length++] = move;
+                }
+                if (valid) {
+                    addGame(buffer, length);
+                } else {
+                    rejectedGames++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams games from a PGN file. SAN is resolved against the board as the game is
+     * replayed, and the position keys are taken from that same replay; games that do not
+     * start from the initial position are skipped.
+     */
+    public void addPgnGames(Path path) throws IOException {
+        int[] buffer = new int[maxPly];
+        long[] positions = new long[maxPly];
+        try (PgnReader reader = PgnReader.open(path)) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                if (game.getTag("FEN") != null) {
+                    continue;
+                }
+                ChessBoard board = new ChessBoard();
+                int length = 0;
+                boolean valid = true;
+                for (String san : game.getMoves()) {
+                    if (length == buffer.length || board.isGameOver()) {
+                        break;
+                    }
+                    long key = board.getZobristKey();
+                    int move = San.parse(board, san);
+                    if (move == Move.NONE || !board.makeMove(Move.fromRow(move), Move.fromCol(move),
+                                                             Move.toRow(move), Move.toCol(move),
+                                                             Move.promotion(move))) {
+                        valid = false;
+                        break;
+                    }
+                    positions[length] = key;
+                    buffer[length++] = move;
+                }
+                if (valid) {
+                    for (int i = 0; i < length; i++) {
+                        add(positions[i], buffer[i]);
+                    }
+                    gameCount++;
+                } else {
+                    rejectedGames++;
+                }
+            }
+        }
+    }
+
+    private void add(long key, int move) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        keys[size] = key;
+        moves[size] = move;
+        size++;
+    }
+
+    public void write(Path output) throws IOException {
+        sort(0, size - 1);
+
+        // Collapse duplicates in place: moves[] keeps the move, counts[] the number of games
+        int[] counts = new int[size];
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique > 0 && keys[unique - 1] == keys[i] && moves[unique - 1] == moves[i]) {
+                counts[unique - 1]++;
+            } else {
+                keys[unique] = keys[i];
+                moves[unique] = moves[i];
+                counts[unique] = 1;
+                unique++;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < unique; i++) {
+            if (counts[i] >= minWeight) {
+                keys[kept] = keys[i];
+                moves[kept] = moves[i];
+                counts[kept] = counts[i];
+                kept++;
+            }
+        }
+        sortGroupsByWeight(counts, kept);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(kept);
+            for (int i = 0; i < kept; i++) {
+                out.writeLong(keys[i]);
+                out.writeInt(moves[i]);
+                out.writeInt(counts[i]);
+            }
+        }
+        System.out.println("[BOOK] Wrote " + kept + " entries from " + gameCount + " games (" +
+                           rejectedGames + " rejected) to " + output);
+    }
+
+    private void sortGroupsByWeight(int[] counts, int length) {
+        int start = 0;
+        while (start < length) {
+            int end = start + 1;
+            while (end < length && keys[end] == keys[start]) {
+                end++;
+            }
+            for (int i = start + 1; i < end; i++) {
+                int move = moves[i];
+                int count = counts[i];
+                int j = i - 1;
+                while (j >= start && counts[j] < count) {
+                    moves[j + 1] = moves[j];
+                    counts[j + 1] = counts[j];
+                    j--;
+                }
+                moves[j + 1] = move;
+                counts[j + 1] = count;
+            }
+            start = end;
+        }
+    }
+
+    private int compare(int i, int j) {
+        int cmp = Long.compare(keys[i], keys[j]);
+        return cmp != 0 ? cmp : Integer.compare(moves[i], moves[j]);
+    }
+
+    private void swap(int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    private void sort(int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    for (int j = i; j > low && compare(j - 1, j) > 0; j--) {
+                        swap(j - 1, j);
+                    }
+                }
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            if (compare(mid, low) < 0) swap(mid, low);
+            if (compare(high, low) < 0) swap(high, low);
+            if (compare(high, mid) < 0) swap(high, mid);
+            swap(mid, high - 1);
+            int pivot = high - 1;
+            int i = low;
+            int j = high - 1;
+            while (true) {
+                while (compare(++i, pivot) < 0) { }
+                while (j > low && compare(--j, pivot) > 0) { }
+                if (i >= j) {
+                    break;
+                }
+                swap(i, j);
+            }
+            swap(i, high - 1);
+            if (i - low < high - i) {
+                sort(low, i - 1);
+                low = i + 1;
+            } else {
+                sort(i + 1, high);
+                high = i - 1;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningBookBuilder <games.txt|games.pgn> <output.book> [maxPly] [minWeight]");
+            System.exit(1);
+        }
+        int maxPly = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_PLY;
+        int minWeight = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MIN_WEIGHT;
+
+        ChessBoard.setLoggingEnabled(false);
+        OpeningBookBuilder builder = new OpeningBookBuilder(maxPly, minWeight);
+        if (args[0].toLowerCase().endsWith(".pgn")) {
+            builder.addPgnGames(Paths.get(args[0]));
+        } else {
+            builder.addCoordinateGames(Paths.get(args[0]));
+        }
+        builder.write(Paths.get(args[1]));
+    }
+}
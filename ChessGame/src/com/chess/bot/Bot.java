@@ -0,0 +1,215 @@
+package com.chess.bot;
+
+import com.chess.engine.Position;
+import com.chess.model.BoardSnapshot;
+import com.chess.model.GameOverReason;
+import com.chess.model.Move;
+import com.chess.model.PieceColor;
+import com.chess.network.ChessMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated player. Its thread reads the connection and plays game after game until the
+ * run ends; replies are sent from the shared timer wheel once the think time has passed, so
+ * the reader never sleeps. Moves are picked at random from the engine's legal moves.
+ */
+class Bot implements Runnable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final long OPENING_RETRY_MILLIS = 500;
+    private static final long REFUSED_BACKOFF_MILLIS = 1000;
+
+    private final LoadGenerator generator;
+    private final InetSocketAddress address;
+    private final int[] moves = new int[256];
+
+    private volatile Socket socket;
+    private ObjectOutputStream out;
+    private PieceColor color;
+    private volatile int game;
+    private volatile long pendingSentNanos;
+    private volatile boolean resent;
+    private boolean abandoning;
+
+    Bot(LoadGenerator generator, InetSocketAddress address) {
+        this.generator = generator;
+        this.address = address;
+    }
+
+    @Override
+    public void run() {
+        while (generator.isRunning()) {
+            if (playGame()) {
+                // Reconnecting at once would only feed the storm the server is shedding
+                try {
+                    TimeUnit.MILLISECONDS.sleep(REFUSED_BACKOFF_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Plays one game on a fresh connection. Returns true if the server refused the connection. */
+    private boolean playGame() {
+        game++;
+        color = null;
+        pendingSentNanos = 0;
+        abandoning = false;
+        boolean gameOver = false;
+        try (Socket s = new Socket()) {
+            socket = s;
+            try {
+                s.connect(address, CONNECT_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                generator.connectFailed(e);
+                return false;
+            }
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(generator.getReadTimeoutMillis());
+            synchronized (this) {
+                out = new ObjectOutputStream(s.getOutputStream());
+                out.flush();
+            }
+            ObjectInputStream in = new ObjectInputStream(s.getInputStream());
+            while (true) {
+                ChessMessage message = (ChessMessage) in.readObject();
+                switch (message.getType()) {
+                    case PLAYER_ASSIGNED:
+                        color = message.getPlayerColor();
+                        if (message.getHeartbeatMillis() > 0) {
+                            int current = game;
+                            long interval = message.getHeartbeatMillis();
+                            generator.getTimers().schedule(() -> ping(current, interval), interval, TimeUnit.MILLISECONDS);
+                        }
+                        break;
+                    case BOARD_UPDATE:
+                        onBoardUpdate(message);
+                        break;
+                    case CONNECTION_REJECTED:
+                        generator.connectRefused(message.getReason());
+                        return true;
+                    case GAME_OVER:
+                        gameOver = true;
+                        // Both players hear about a finished game; an abandoned one reaches only the one left
+                        if (color == PieceColor.WHITE || message.getGameOverReason() == GameOverReason.ABANDONED) {
+                            generator.gameFinished(message.getGameOverReason());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (EOFException e) {
+            // The server closes both connections once the game is over
+            if (!gameOver && !abandoning && generator.isRunning()) {
+                generator.connectionLost(e);
+            }
+        } catch (SocketTimeoutException e) {
+            generator.timedOut();
+        } catch (IOException | ClassNotFoundException e) {
+            if (!abandoning && generator.isRunning()) {
+                generator.connectionLost(e);
+            }
+        }
+        return false;
+    }
+
+    private void onBoardUpdate(ChessMessage message) {
+        long sentNanos = pendingSentNanos;
+        if (sentNanos != 0 && message.getEchoNanos() == sentNanos) {
+            pendingSentNanos = 0;
+            // A resent opening move was also waiting for the opponent to sit down
+            if (!resent) {
+                generator.moveAcknowledged(System.nanoTime() - sentNanos);
+            }
+        }
+        BoardSnapshot board = message.getBoard();
+        if (board.isGameOver() || board.getCurrentTurn() != color || pendingSentNanos != 0) {
+            return;
+        }
+        if (board.getMoveCount() >= generator.getMaxPlies()) {
+            abandon();
+            return;
+        }
+        Position position = Position.fromSnapshot(board);
+        int count = position.generateLegal(moves);
+        if (count == 0) {
+            return;
+        }
+        int move = moves[ThreadLocalRandom.current().nextInt(count)];
+        long think = generator.getThinkTime().nextMillis(ThreadLocalRandom.current());
+        // The server ignores moves until the second player joins, so White repeats its first
+        boolean opening = board.getMoveCount() == 0;
+        int current = game;
+        generator.getTimers().schedule(() -> sendMove(current, move, opening, false), think, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sendMove(int forGame, int move, boolean opening, boolean retry) {
+        if (forGame != game || (retry && pendingSentNanos == 0)) {
+            return;
+        }
+        try {
+            ChessMessage message = ChessMessage.createMoveMessage(Move.fromRow(move), Move.fromCol(move),
+                                                                  Move.toRow(move), Move.toCol(move));
+            message.setPromotionType(Move.promotion(move));
+            if (!retry) {
+                pendingSentNanos = System.nanoTime();
+                resent = false;
+            } else {
+                resent = true;
+            }
+            message.setSentNanos(pendingSentNanos);
+            out.writeObject(message);
+            out.flush();
+            if (!retry) {
+                generator.moveSent();
+            }
+            if (opening) {
+                generator.getTimers().schedule(() -> sendMove(forGame, move, true, true), OPENING_RETRY_MILLIS,
+                                               TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            // The reader sees the broken connection too and reports it
+        }
+    }
+
+    /** Keeps the server from reaping a bot that is waiting for an opponent or thinking. */
+    private synchronized void ping(int forGame, long intervalMillis) {
+        if (forGame != game || !generator.isRunning()) {
+            return;
+        }
+        try {
+            out.writeObject(ChessMessage.createPing());
+            out.flush();
+            generator.getTimers().schedule(() -> ping(forGame, intervalMillis), intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            // The reader sees the broken connection too and reports it
+        }
+    }
+
+    /** Leaves an overlong game; the opponent wins by abandonment and both start a new one. */
+    private void abandon() {
+        abandoning = true;
+        close();
+    }
+
+    void close() {
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.chess.bot;
+
+import com.chess.model.GameOverReason;
+import com.chess.server.TimerWheel;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts load on a running ChessServer with many headless bots speaking the normal protocol.
+ * The server pairs connections in arrival order, so bots play each other; each plays random
+ * legal moves after a think time and starts a new game when one ends. Move round-trip
+ * latency is read from the echo in the board update that answers each move.
+ *
+ * Start the server with -Dchess.verbose=false so its per-message logging is not the
+ * bottleneck being measured, and with -Dchess.accept.rate=0 since every bot connects from
+ * the same address.
+ */
+public class LoadGenerator {
+    public static final String DEFAULT_THINK_TIME = "lognormal:500";
+    public static final int DEFAULT_MAX_PLIES = 200;
+    private static final int DEFAULT_PORT = 8888;
+    private static final int CONNECTS_PER_SECOND = 500;
+    private static final int REPORT_SECONDS = 5;
+    private static final int READ_TIMEOUT_SLACK_MILLIS = 30_000;
+    private static final int BOT_STACK_SIZE = 256 * 1024;
+
+    private final ThinkTime thinkTime;
+    private final int maxPlies;
+    private final int readTimeoutMillis;
+    private final TimerWheel timers = new TimerWheel(1, TimeUnit.MILLISECONDS, "bot-timers");
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong movesSent = new AtomicLong();
+    private final AtomicLong movesAcknowledged = new AtomicLong();
+    private final AtomicLong connectErrors = new AtomicLong();
+    private final AtomicLong refusals = new AtomicLong();
+    private final AtomicLong connectionErrors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final Map<GameOverReason, AtomicLong> results = new EnumMap<>(GameOverReason.class);
+    private volatile boolean running = true;
+
+    public LoadGenerator(ThinkTime thinkTime, int maxPlies) {
+        this.thinkTime = thinkTime;
+        this.maxPlies = maxPlies;
+        this.readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, thinkTime.ceilingMillis() + READ_TIMEOUT_SLACK_MILLIS);
+        for (GameOverReason reason : GameOverReason.values()) {
+            results.put(reason, new AtomicLong());
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    ThinkTime getThinkTime() {
+        return thinkTime;
+    }
+
+    int getMaxPlies() {
+        return maxPlies;
+    }
+
+    int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    TimerWheel getTimers() {
+        return timers;
+    }
+
+    void moveSent() {
+        movesSent.incrementAndGet();
+    }
+
+    void moveAcknowledged(long nanos) {
+        latency.record(nanos);
+        movesAcknowledged.incrementAndGet();
+    }
+
+    void gameFinished(GameOverReason reason) {
+        results.get(reason == null ? GameOverReason.CHECKMATE : reason).incrementAndGet();
+    }
+
+    void connectFailed(Exception e) {
+        if (connectErrors.incrementAndGet() == 1) {
+            System.err.println("[LOAD] Connect failed: " + e.getMessage());
+        }
+    }
+
+    void connectRefused(String reason) {
+        if (refusals.incrementAndGet() == 1) {
+            System.err.println("[LOAD] Connection refused by server: " + reason);
+        }
+    }
+
+    void connectionLost(Exception e) {
+        if (connectionErrors.incrementAndGet() == 1) {
+            System.err.println("[LOAD] Connection lost: " + e);
+        }
+    }
+
+    void timedOut() {
+        timeouts.incrementAndGet();
+    }
+
+    public void run(InetSocketAddress address, int botCount, long seconds) throws InterruptedException {
+        System.out.println("[LOAD] " + botCount + " bots against " + address + " for " + seconds +
+                           " s, think time " + thinkTime + ", games cut at " + maxPlies + " plies");
+        List<Bot> bots = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = startNanos + TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+        long[] lastLatency = latency.snapshot();
+        long lastAcknowledged = 0;
+        long lastReportNanos = startNanos;
+
+        // Ramp up so the accept backlog is never overrun
+        for (int i = 0; i < botCount && System.nanoTime() < endNanos; i++) {
+            Bot bot = new Bot(this, address);
+            bots.add(bot);
+            new Thread(null, bot, "bot-" + i, BOT_STACK_SIZE).start();
+            TimeUnit.MICROSECONDS.sleep(1_000_000 / CONNECTS_PER_SECOND);
+        }
+
+        while (System.nanoTime() < endNanos) {
+            TimeUnit.MILLISECONDS.sleep(Math.max(1, Math.min(nextReport, endNanos) - System.nanoTime()) / 1_000_000);
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                long[] current = latency.snapshot();
+                long[] interval = new long[current.length];
+                for (int i = 0; i < current.length; i++) {
+                    interval[i] = current[i] - lastLatency[i];
+                }
+                long acknowledged = movesAcknowledged.get();
+                report(String.format("%5.0f s", (now - startNanos) / 1e9), interval,
+                       (acknowledged - lastAcknowledged) / ((now - lastReportNanos) / 1e9));
+                lastLatency = current;
+                lastAcknowledged = acknowledged;
+                lastReportNanos = now;
+                nextReport = now + TimeUnit.SECONDS.toNanos(REPORT_SECONDS);
+            }
+        }
+
+        running = false;
+        for (Bot bot : bots) {
+            bot.close();
+        }
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println("[LOAD] ───────────── totals ─────────────");
+        report("total", latency.snapshot(), movesAcknowledged.get() / elapsed);
+        long games = 0;
+        StringBuilder byReason = new StringBuilder();
+        for (Map.Entry<GameOverReason, AtomicLong> entry : results.entrySet()) {
+            long count = entry.getValue().get();
+            games += count;
+            if (count > 0) {
+                byReason.append(", ").append(entry.getKey().name().toLowerCase()).append(' ').append(count);
+            }
+        }
+        System.out.printf("[LOAD] %d games (%.1f/s)%s%n", games, games / elapsed, byReason);
+        long sent = movesSent.get();
+        long errors = connectErrors.get() + refusals.get() + connectionErrors.get() + timeouts.get();
+        System.out.printf("[LOAD] %d moves sent, %d acknowledged; errors: %d connect, %d refused, %d dropped, " +
+                          "%d timed out (%.3f%% of moves)%n", sent, movesAcknowledged.get(), connectErrors.get(),
+                          refusals.get(), connectionErrors.get(), timeouts.get(),
+                          sent == 0 ? 0.0 : errors * 100.0 / sent);
+    }
+
+    private void report(String label, long[] histogram, double movesPerSecond) {
+        System.out.printf("[LOAD] %s  %7.1f moves/s  rtt ms p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f  (%d)%n",
+                          label, movesPerSecond,
+                          LatencyHistogram.percentile(histogram, 0.50) / 1000.0,
+                          LatencyHistogram.percentile(histogram, 0.90) / 1000.0,
+                          LatencyHistogram.percentile(histogram, 0.99) / 1000.0,
+                          LatencyHistogram.percentile(histogram, 0.999) / 1000.0,
+                          LatencyHistogram.percentile(histogram, 1.0) / 1000.0,
+                          LatencyHistogram.count(histogram));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadGenerator <bots> [seconds] [thinkTime] [maxPlies] [host[:port]]");
+            System.err.println("  thinkTime: ms, min-max, exp:mean or lognormal:median (default " +
+                               DEFAULT_THINK_TIME + ")");
+            System.exit(1);
+        }
+        int bots = Integer.parseInt(args[0]);
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 60;
+        ThinkTime thinkTime = ThinkTime.parse(args.length > 2 ? args[2] : DEFAULT_THINK_TIME);
+        int maxPlies = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_PLIES;
+        String target = args.length > 4 ? args[4] : "localhost";
+        int colon = target.lastIndexOf(':');
+        InetSocketAddress address = colon < 0 ? new InetSocketAddress(target, DEFAULT_PORT) :
+            new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        if (bots % 2 != 0) {
+            System.out.println("[LOAD] Odd bot count; the last bot will wait for an opponent");
+        }
+
+        new LoadGenerator(thinkTime, maxPlies).run(address, bots, seconds);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.chess.bot;
+
+import java.util.Random;
+
+/**
+ * How long a bot waits before answering a move. Written as a fixed delay ("500"), a uniform
+ * range ("200-2000"), an exponential distribution ("exp:800") or a log-normal one
+ * ("lognormal:800"), all in milliseconds; the two distributions take their mean and median.
+ */
+public class ThinkTime {
+    private static final double LOGNORMAL_SIGMA = 0.6;
+
+    private enum Kind { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+
+    private final Kind kind;
+    private final long low;
+    private final long high;
+    private final String text;
+
+    private ThinkTime(Kind kind, long low, long high, String text) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("Invalid think time: " + text);
+        }
+        this.kind = kind;
+        this.low = low;
+        this.high = high;
+        this.text = text;
+    }
+
+    public static ThinkTime parse(String text) {
+        String spec = text.trim().toLowerCase();
+        try {
+            if (spec.startsWith("exp:")) {
+                long mean = Long.parseLong(spec.substring(4));
+                return new ThinkTime(Kind.EXPONENTIAL, mean, mean, text);
+            }
+            if (spec.startsWith("lognormal:")) {
+                long median = Long.parseLong(spec.substring(10));
+                return new ThinkTime(Kind.LOGNORMAL, median, median, text);
+            }
+            int dash = spec.indexOf('-');
+            if (dash > 0) {
+                return new ThinkTime(Kind.UNIFORM, Long.parseLong(spec.substring(0, dash)),
+                                     Long.parseLong(spec.substring(dash + 1)), text);
+            }
+            long fixed = Long.parseLong(spec);
+            return new ThinkTime(Kind.FIXED, fixed, fixed, text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid think time: " + text);
+        }
+    }
+
+    public long nextMillis(Random random) {
+        switch (kind) {
+            case UNIFORM:
+                return low + (long) (random.nextDouble() * (high - low + 1));
+            case EXPONENTIAL:
+                return Math.round(-Math.log(1 - random.nextDouble()) * low);
+            case LOGNORMAL:
+                return Math.round(low * Math.exp(random.nextGaussian() * LOGNORMAL_SIGMA));
+            default:
+                return low;
+        }
+    }
+
+    /** A think time that is practically never exceeded, for deciding when a silent opponent is stuck. */
+    public long ceilingMillis() {
+        switch (kind) {
+            case EXPONENTIAL:
+                return low * 10;
+            case LOGNORMAL:
+                return Math.round(low * Math.exp(5 * LOGNORMAL_SIGMA));
+            default:
+                return high;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
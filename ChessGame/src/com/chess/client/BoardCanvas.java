@@ -0,0 +1,409 @@
+package com.chess.client;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.ChessPiece;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The whole board as one custom-painted component. Pieces are copied from a sprite atlas
+ * holding the twelve pieces (plain and in-check) pre-rendered at the current square size,
+ * and moves slide to their new square at the display's refresh rate. Only the squares that
+ * change are repainted.
+ */
+public class BoardCanvas extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final Color LIGHT_SQUARE = new Color(240, 217, 181);
+    private static final Color DARK_SQUARE = new Color(181, 136, 99);
+    private static final Color SELECTED_HIGHLIGHT = new Color(246, 246, 130);
+    private static final Color PREMOVE_HIGHLIGHT = new Color(150, 190, 230);
+    private static final Color VALID_MOVE_DOT = new Color(80, 80, 80, 200);
+    private static final Color CHECK_HIGHLIGHT = new Color(255, 100, 100);
+    private static final Color CHECK_BORDER = new Color(200, 0, 0);
+    private static final Color PIECE_COLOR = new Color(50, 50, 50);
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+    private static final Color OVERLAY_TEXT = new Color(120, 255, 120);
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final BasicStroke SQUARE_STROKE = new BasicStroke(5);
+    private static final int DEFAULT_SQUARE_SIZE = 85;
+    private static final int ANIMATION_MILLIS = 160;
+
+    /** Receives clicks as board coordinates. */
+    public interface SquareListener {
+        void squareClicked(int row, int col);
+    }
+
+    private final ChessPiece[] pieces = new ChessPiece[64];
+    private long targets;
+    private long checkSquares;
+    private int selected = -1;
+    private long premoveSquares;
+    private boolean positionShown;
+
+    private BufferedImage atlas;
+    private int atlasSquareSize;
+
+    private final List<Slide> slides = new ArrayList<>();
+    private final Timer animationTimer;
+
+    private String[] overlay;
+    private Rectangle overlayBounds;
+    private Runnable paintListener;
+
+    /** A piece moving from one square to another; its destination is not drawn until it lands. */
+    private static class Slide {
+        final ChessPiece piece;
+        final int from;
+        final int to;
+        final long startNanos;
+        Rectangle lastBounds;
+
+        Slide(ChessPiece piece, int from, int to, long startNanos) {
+            this.piece = piece;
+            this.from = from;
+            this.to = to;
+            this.startNanos = startNanos;
+        }
+    }
+
+    public BoardCanvas(SquareListener listener) {
+        setOpaque(true);
+        setPreferredSize(new Dimension(DEFAULT_SQUARE_SIZE * 8, DEFAULT_SQUARE_SIZE * 8));
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int square = squareAt(e.getX(), e.getY());
+                if (square != -1) {
+                    listener.squareClicked(square / 8, square % 8);
+                }
+            }
+        });
+        animationTimer = new Timer(1000 / refreshRate(), e -> animate());
+    }
+
+    private static int refreshRate() {
+        try {
+            int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                          .getDisplayMode().getRefreshRate();
+            return rate > 0 ? rate : 60;
+        } catch (HeadlessException e) {
+            return 60;
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Dimension size = super.getPreferredSize();
+        Insets insets = getInsets();
+        return new Dimension(size.width + insets.left + insets.right, size.height + insets.top + insets.bottom);
+    }
+
+    /**
+     * Shows a new position. Squares whose contents did not change are not repainted; pieces
+     * that moved slide from their old square.
+     */
+    public void setPosition(ChessBoard board) {
+        long changed = 0;
+        long check = 0;
+        ChessPiece[] next = new ChessPiece[64];
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square / 8, square % 8);
+            next[square] = piece;
+            if (piece != pieces[square]) {
+                changed |= 1L << square;
+            }
+            if (piece != null && piece.getType() == PieceType.KING && board.isInCheck(piece.getColor())) {
+                check |= 1L << square;
+            }
+        }
+        for (Slide slide : slides) {
+            // A new position arrived mid-animation; drop the old slides where they are
+            changed |= 1L << slide.to;
+            if (slide.lastBounds != null) {
+                repaint(slide.lastBounds);
+            }
+        }
+        slides.clear();
+        if (positionShown) {
+            startSlides(next, changed);
+        }
+        positionShown = true;
+        System.arraycopy(next, 0, pieces, 0, 64);
+        repaintSquares(changed | check ^ checkSquares);
+        checkSquares = check;
+    }
+
+    /**
+     * Pairs vacated squares with the squares the same side's pieces arrived on: one pair for
+     * a normal move, two for castling. A promoted pawn slides and lands as its new piece.
+     */
+    private void startSlides(ChessPiece[] next, long changed) {
+        long now = System.nanoTime();
+        for (long to = changed; to != 0; to &= to - 1) {
+            int target = Long.numberOfTrailingZeros(to);
+            ChessPiece arrived = next[target];
+            if (arrived == null) {
+                continue;
+            }
+            for (long from = changed; from != 0; from &= from - 1) {
+                int origin = Long.numberOfTrailingZeros(from);
+                ChessPiece left = pieces[origin];
+                if (next[origin] == null && left != null && left.getColor() == arrived.getColor() &&
+                    (left == arrived || left.getType() == PieceType.PAWN)) {
+                    slides.add(new Slide(arrived, origin, target, now));
+                    break;
+                }
+            }
+        }
+        if (!slides.isEmpty() && !animationTimer.isRunning()) {
+            animationTimer.start();
+        }
+    }
+
+    public void setSelection(int row, int col, long targets) {
+        long dirty = this.targets | targets;
+        if (selected != -1) {
+            dirty |= 1L << selected;
+        }
+        selected = row * 8 + col;
+        this.targets = targets;
+        repaintSquares(dirty | 1L << selected);
+    }
+
+    public void clearSelection() {
+        long dirty = targets;
+        if (selected != -1) {
+            dirty |= 1L << selected;
+        }
+        selected = -1;
+        targets = 0;
+        repaintSquares(dirty);
+    }
+
+    /** Marks the two squares of a queued premove. */
+    public void setPremove(int from, int to) {
+        long squares = 1L << from | 1L << to;
+        repaintSquares(premoveSquares | squares);
+        premoveSquares = squares;
+    }
+
+    public void clearPremove() {
+        repaintSquares(premoveSquares);
+        premoveSquares = 0;
+    }
+
+    /** Text drawn over the top-left corner of the board, or null for none. */
+    public void setOverlay(String[] lines) {
+        if (overlayBounds != null) {
+            repaint(overlayBounds);
+        }
+        overlay = lines;
+        overlayBounds = null;
+        if (lines != null) {
+            FontMetrics fm = getFontMetrics(OVERLAY_FONT);
+            int width = 0;
+            for (String line : lines) {
+                width = Math.max(width, fm.stringWidth(line));
+            }
+            overlayBounds = new Rectangle(originX(), originY(), width + 12, lines.length * fm.getHeight() + 8);
+            repaint(overlayBounds);
+        }
+    }
+
+    /** Called on the EDT after every paint of the board has finished. */
+    public void setPaintListener(Runnable listener) {
+        paintListener = listener;
+    }
+
+    private void animate() {
+        long now = System.nanoTime();
+        for (int i = slides.size() - 1; i >= 0; i--) {
+            Slide slide = slides.get(i);
+            if (slide.lastBounds != null) {
+                repaint(slide.lastBounds);
+            }
+            if (now - slide.startNanos >= ANIMATION_MILLIS * 1_000_000L) {
+                slides.remove(i);
+                repaintSquares(1L << slide.to);
+            } else {
+                slide.lastBounds = slideBounds(slide, now);
+                repaint(slide.lastBounds);
+            }
+        }
+        if (slides.isEmpty()) {
+            animationTimer.stop();
+        }
+    }
+
+    private Rectangle slideBounds(Slide slide, long now) {
+        double t = Math.min(1.0, (now - slide.startNanos) / (ANIMATION_MILLIS * 1_000_000.0));
+        // Ease out so the piece settles onto its square
+        t = 1 - (1 - t) * (1 - t);
+        int size = squareSize();
+        int x = (int) Math.round((slide.from % 8 + (slide.to % 8 - slide.from % 8) * t) * size);
+        int y = (int) Math.round((slide.from / 8 + (slide.to / 8 - slide.from / 8) * t) * size);
+        return new Rectangle(originX() + x, originY() + y, size, size);
+    }
+
+    private void repaintSquares(long squares) {
+        int size = squareSize();
+        for (; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            repaint(originX() + square % 8 * size, originY() + square / 8 * size, size, size);
+        }
+    }
+
+    private int squareSize() {
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+        return Math.max(1, Math.min(width, height) / 8);
+    }
+
+    /** Left edge of the board, which is centred in the space inside the border. */
+    private int originX() {
+        Insets insets = getInsets();
+        return insets.left + (getWidth() - insets.left - insets.right - squareSize() * 8) / 2;
+    }
+
+    private int originY() {
+        Insets insets = getInsets();
+        return insets.top + (getHeight() - insets.top - insets.bottom - squareSize() * 8) / 2;
+    }
+
+    private int squareAt(int x, int y) {
+        int size = squareSize();
+        int col = (x - originX()) / size;
+        int row = (y - originY()) / size;
+        if (x < originX() || y < originY() || col > 7 || row > 7) {
+            return -1;
+        }
+        return row * 8 + col;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(getBackground());
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        int size = squareSize();
+        int left = originX();
+        int top = originY();
+        BufferedImage sprites = getAtlas(size);
+        Rectangle clip = g2.getClipBounds();
+
+        long landing = 0;
+        for (Slide slide : slides) {
+            landing |= 1L << slide.to;
+        }
+        for (int square = 0; square < 64; square++) {
+            int x = left + square % 8 * size;
+            int y = top + square / 8 * size;
+            if (clip != null && !clip.intersects(x, y, size, size)) {
+                continue;
+            }
+            boolean inCheck = (checkSquares & 1L << square) != 0;
+            boolean target = (targets & 1L << square) != 0;
+            ChessPiece piece = (landing & 1L << square) != 0 ? null : pieces[square];
+
+            g2.setColor(square == selected ? SELECTED_HIGHLIGHT : inCheck ? CHECK_HIGHLIGHT :
+                        (premoveSquares & 1L << square) != 0 ? PREMOVE_HIGHLIGHT :
+                        (square / 8 + square % 8) % 2 == 0 ? LIGHT_SQUARE : DARK_SQUARE);
+            g2.fillRect(x, y, size, size);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (inCheck) {
+                g2.setColor(CHECK_BORDER);
+                g2.setStroke(SQUARE_STROKE);
+                g2.drawRect(x + 2, y + 2, size - 4, size - 4);
+            }
+            if (piece != null) {
+                drawSprite(g2, sprites, piece, inCheck, x, y, size);
+            }
+            if (target) {
+                g2.setColor(VALID_MOVE_DOT);
+                if (piece == null) {
+                    int dotSize = Math.max(4, size * 18 / DEFAULT_SQUARE_SIZE);
+                    g2.fillOval(x + (size - dotSize) / 2, y + (size - dotSize) / 2, dotSize, dotSize);
+                } else {
+                    g2.setStroke(SQUARE_STROKE);
+                    g2.drawOval(x + 5, y + 5, size - 10, size - 10);
+                }
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Slide slide : slides) {
+            Rectangle bounds = slideBounds(slide, now);
+            drawSprite(g2, sprites, slide.piece, false, bounds.x, bounds.y, size);
+        }
+
+        if (overlay != null) {
+            drawOverlay(g2);
+        }
+        if (paintListener != null) {
+            paintListener.run();
+        }
+    }
+
+    private void drawOverlay(Graphics2D g2) {
+        g2.setColor(OVERLAY_BACKGROUND);
+        g2.fill(overlayBounds);
+        g2.setFont(OVERLAY_FONT);
+        g2.setColor(OVERLAY_TEXT);
+        FontMetrics fm = g2.getFontMetrics();
+        int y = overlayBounds.y + 4 + fm.getAscent();
+        for (String line : overlay) {
+            g2.drawString(line, overlayBounds.x + 6, y);
+            y += fm.getHeight();
+        }
+    }
+
+    private static void drawSprite(Graphics2D g2, BufferedImage sprites, ChessPiece piece, boolean inCheck,
+                                   int x, int y, int size) {
+        int index = spriteIndex(piece, inCheck);
+        g2.drawImage(sprites, x, y, x + size, y + size, index * size, 0, (index + 1) * size, size, null);
+    }
+
+    private static int spriteIndex(ChessPiece piece, boolean inCheck) {
+        return (piece.getType().ordinal() * 2 + piece.getColor().ordinal()) * 2 + (inCheck ? 1 : 0);
+    }
+
+    /** One row of 24 sprites: each piece plain and in check, rebuilt only when the size changes. */
+    private BufferedImage getAtlas(int size) {
+        if (atlas != null && atlasSquareSize == size) {
+            return atlas;
+        }
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        atlas = config != null ? config.createCompatibleImage(size * 24, size, Transparency.TRANSLUCENT)
+                               : new BufferedImage(size * 24, size, BufferedImage.TYPE_INT_ARGB);
+        atlasSquareSize = size;
+        Graphics2D g2 = atlas.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Font plain = new Font("Arial Unicode MS", Font.PLAIN, size * 50 / DEFAULT_SQUARE_SIZE);
+        Font bold = new Font("Arial Unicode MS", Font.BOLD, size * 56 / DEFAULT_SQUARE_SIZE);
+        for (PieceType type : PieceType.values()) {
+            for (PieceColor color : PieceColor.values()) {
+                ChessPiece piece = ChessPiece.of(type, color);
+                for (boolean inCheck : new boolean[] {false, true}) {
+                    g2.setColor(inCheck ? Color.BLACK : PIECE_COLOR);
+                    g2.setFont(inCheck ? bold : plain);
+                    String symbol = piece.getSymbol();
+                    FontMetrics fm = g2.getFontMetrics();
+                    int x = spriteIndex(piece, inCheck) * size + (size - fm.stringWidth(symbol)) / 2;
+                    int y = (size - fm.getHeight()) / 2 + fm.getAscent();
+                    g2.drawString(symbol, x, y);
+                }
+            }
+        }
+        g2.dispose();
+        return atlas;
+    }
+}
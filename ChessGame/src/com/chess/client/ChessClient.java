@@ -1,33 +1,48 @@
 package com.chess.client;
 
+import com.chess.engine.Searcher;
+import com.chess.model.BoardSnapshot;
 import com.chess.model.ChessBoard;
 import com.chess.model.ChessPiece;
+import com.chess.model.GameOverReason;
+import com.chess.model.Move;
 import com.chess.model.PieceColor;
 import com.chess.model.PieceType;
+import com.chess.network.ChatLine;
 import com.chess.network.ChessMessage;
 import com.chess.network.MessageType;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
+import java.awt.event.KeyEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DocumentFilter;
 import java.io.*;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.sound.sampled.*;
 
 public class ChessClient extends JFrame {
     private static final String SERVER_HOST = "localhost";
     private static final int SERVER_PORT = 8888;
+    // -Dchess.spectate=true watches the server's latest game instead of joining one
+    private static final boolean SPECTATE = Boolean.getBoolean("chess.spectate");
+    private static final int SPECTATOR_PORT = Integer.getInteger("chess.spectator.port", SERVER_PORT + 1);
+    private static final int CHAT_HISTORY_LINES = 500;
     
-    private static final Color LIGHT_SQUARE = new Color(240, 217, 181);
-    private static final Color DARK_SQUARE = new Color(181, 136, 99);
-    private static final Color SELECTED_HIGHLIGHT = new Color(246, 246, 130);
-    private static final Color VALID_MOVE_DOT = new Color(80, 80, 80, 200);
     private static final Color CHECK_HIGHLIGHT = new Color(255, 100, 100);
-    private static final Color CHECK_BORDER = new Color(200, 0, 0);
-    private static final Color PIECE_COLOR = new Color(50, 50, 50);
+    private static final int LEGAL_MOVE_CACHE_SIZE = 64;
+    private static final long[] NO_LEGAL_MOVES = new long[64];
+    private static final int HEARTBEAT_MISSES = 3;
+    private static final String LATENCY_FILE = System.getProperty("chess.latency.file", "chess-latency.csv");
     
     private Socket socket;
     private ObjectOutputStream out;
@@ -35,14 +50,47 @@ public class ChessClient extends JFrame {
     
     private ChessBoard board;
     private PieceColor myColor;
-    private ChessSquarePanel[][] boardSquares;
+    private BoardCanvas boardCanvas;
     private JLabel statusLabel;
     private JLabel colorLabel;
     private JLabel moveCountLabel;
     private JButton musicToggleButton;
+    private JButton hintsToggleButton;
+    private JLabel analysisLabel;
+    private JTextArea chatArea;
+    private JTextField chatInput;
+    private boolean hintsEnabled = false;
+    private volatile boolean gameOver = false;
+    private long[] clockMillis;
+    private long clockReceivedNanos;
+    private Timer clockTimer;
+    private final LatencyMonitor latency = new LatencyMonitor();
+    private volatile long pendingMoveNanos;
+    private volatile long lastHeardNanos = System.nanoTime();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long paintPendingNanos;
+    private boolean latencyOverlayShown;
     private int selectedRow = -1;
     private int selectedCol = -1;
-    private List<int[]> validMoves = new ArrayList<>();
+    // Squares of the premove waiting on the server, or -1
+    private int premoveFrom = -1;
+    // The move shown before the server has answered it, by its number and packed move; 0 if none
+    private int moveSequence;
+    private int pendingSequence;
+    private int pendingMove;
+    // Target squares per origin square as 64-bit masks; replaced on the EDT with each update
+    private long[] legalTargets = NO_LEGAL_MOVES;
+    // Owned by the receiving thread; positions recur on repetitions and reconnects
+    private final Map<Long, long[]> legalMoveCache = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > LEGAL_MOVE_CACHE_SIZE;
+        }
+    };
     
     private Clip musicClip;
     private boolean isMusicPlaying = false;
@@ -54,7 +102,7 @@ public class ChessClient extends JFrame {
 
     public ChessClient() {
         setTitle("♔ Online Chess Game ♚");
-        setSize(700, 800);
+        setSize(960, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
         setResizable(false);
@@ -96,38 +144,36 @@ musicToggleButton.setUI(new javax.swing.plaf.basic.BasicButtonUI());
         musicToggleButton.setBorder(BorderFactory.createEmptyBorder(8, 15, 8, 15));
         musicToggleButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
         musicToggleButton.addActionListener(e -> toggleMusic());
-        topPanel.add(musicToggleButton);
+        
+        hintsToggleButton = new JButton("💡 Hints: OFF");
+        hintsToggleButton.setUI(new javax.swing.plaf.basic.BasicButtonUI());
+        hintsToggleButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        hintsToggleButton.setBackground(Color.BLACK);
+        hintsToggleButton.setForeground(Color.WHITE);
+        hintsToggleButton.setOpaque(true);
+        hintsToggleButton.setBorderPainted(false);
+        hintsToggleButton.setFocusPainted(false);
+        hintsToggleButton.setBorder(BorderFactory.createEmptyBorder(8, 15, 8, 15));
+        hintsToggleButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        hintsToggleButton.addActionListener(e -> toggleHints());
+        
+        JPanel buttonRow = new JPanel(new GridLayout(1, 2, 10, 0));
+        buttonRow.setBackground(new Color(40, 40, 40));
+        buttonRow.add(musicToggleButton);
+        buttonRow.add(hintsToggleButton);
+        topPanel.add(buttonRow);
         
         add(topPanel, BorderLayout.NORTH);
 
-        JPanel boardPanel = new JPanel(new GridLayout(8, 8, 0, 0));
-        boardPanel.setBorder(BorderFactory.createCompoundBorder(
+        boardCanvas = new BoardCanvas(this::handleSquareClick);
+        boardCanvas.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createEmptyBorder(10, 10, 10, 10),
             BorderFactory.createLineBorder(new Color(100, 100, 100), 4)
         ));
-        boardSquares = new ChessSquarePanel[8][8];
-        
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Color squareColor = ((i + j) % 2 == 0) ? LIGHT_SQUARE : DARK_SQUARE;
-                ChessSquarePanel square = new ChessSquarePanel(squareColor, i, j);
-                
-                final int row = i;
-                final int col = j;
-                square.addMouseListener(new MouseAdapter() {
-                    @Override
-                    public void mouseClicked(MouseEvent e) {
-                        handleSquareClick(row, col);
-                    }
-                });
-                
-                boardSquares[i][j] = square;
-                boardPanel.add(square);
-            }
-        }
-        add(boardPanel, BorderLayout.CENTER);
+        boardCanvas.setPaintListener(this::boardPainted);
+        add(boardCanvas, BorderLayout.CENTER);
 
-        JPanel bottomPanel = new JPanel(new GridLayout(2, 1));
+        JPanel bottomPanel = new JPanel(new GridLayout(3, 1));
         bottomPanel.setBackground(new Color(40, 40, 40));
         bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 15, 10));
         
@@ -141,7 +187,37 @@ musicToggleButton.setUI(new javax.swing.plaf.basic.BasicButtonUI());
         instructionLabel2.setForeground(new Color(130, 130, 130));
         bottomPanel.add(instructionLabel2);
         
+        analysisLabel = new JLabel(" ", SwingConstants.CENTER);
+        analysisLabel.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        analysisLabel.setForeground(new Color(120, 190, 255));
+        bottomPanel.add(analysisLabel);
+        
         add(bottomPanel, BorderLayout.SOUTH);
+        add(createChatPanel(), BorderLayout.EAST);
+
+        // Counts the side to move down locally between server updates
+        clockTimer = new Timer(200, e -> updateMoveCountLabel());
+
+        // F3 shows the latency overlay, F4 writes the samples to chess.latency.file
+        JRootPane root = getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "latencyOverlay");
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0), "latencyDump");
+        root.getActionMap().put("latencyOverlay", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                latencyOverlayShown = !latencyOverlayShown;
+                refreshLatencyOverlay();
+            }
+        });
+        root.getActionMap().put("latencyDump", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                dumpLatency();
+            }
+        });
+        if (System.getProperty("chess.latency.file") != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::dumpLatency));
+        }
 
         initializeBackgroundMusic();
 
@@ -150,6 +226,76 @@ musicToggleButton.setUI(new javax.swing.plaf.basic.BasicButtonUI());
         setVisible(true);
     }
     
+    private JPanel createChatPanel() {
+        JPanel chatPanel = new JPanel(new BorderLayout(0, 5));
+        chatPanel.setBackground(new Color(40, 40, 40));
+        chatPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 10));
+        chatPanel.setPreferredSize(new Dimension(250, 0));
+
+        chatArea = new JTextArea();
+        chatArea.setEditable(false);
+        chatArea.setLineWrap(true);
+        chatArea.setWrapStyleWord(true);
+        chatArea.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        chatArea.setBackground(new Color(30, 30, 30));
+        chatArea.setForeground(new Color(220, 220, 220));
+        chatPanel.add(new JScrollPane(chatArea), BorderLayout.CENTER);
+
+        chatInput = new JTextField();
+        chatInput.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        // The server drops longer lines, so don't let them be typed
+        ((AbstractDocument) chatInput.getDocument()).setDocumentFilter(new DocumentFilter() {
+            @Override
+            public void replace(FilterBypass fb, int offset, int length, String text, AttributeSet attrs)
+                    throws BadLocationException {
+                int room = ChessMessage.MAX_CHAT_LENGTH - fb.getDocument().getLength() + length;
+                if (text != null && text.length() > room) {
+                    text = text.substring(0, Math.max(0, room));
+                }
+                super.replace(fb, offset, length, text, attrs);
+            }
+        });
+        chatInput.addActionListener(e -> sendChat());
+        chatPanel.add(chatInput, BorderLayout.SOUTH);
+        return chatPanel;
+    }
+
+    private void sendChat() {
+        String text = chatInput.getText().strip();
+        if (text.isEmpty() || out == null) {
+            return;
+        }
+        chatInput.setText("");
+        try {
+            synchronized (out) {
+                out.writeObject(ChessMessage.createChat(text));
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Appends relayed lines on the EDT, keeping only the most recent ones. */
+    private void showChat(ChatLine[] lines) {
+        StringBuilder text = new StringBuilder();
+        for (ChatLine line : lines) {
+            text.append('[').append(line.getSender()).append("] ").append(line.getText()).append('\n');
+        }
+        SwingUtilities.invokeLater(() -> {
+            chatArea.append(text.toString());
+            int excess = chatArea.getLineCount() - CHAT_HISTORY_LINES;
+            if (excess > 0) {
+                try {
+                    chatArea.replaceRange("", 0, chatArea.getLineEndOffset(excess - 1));
+                } catch (BadLocationException e) {
+                    // Line counts come from the same document
+                }
+            }
+            chatArea.setCaretPosition(chatArea.getDocument().getLength());
+        });
+    }
+
 private void toggleMusic() {
     if (musicClip != null) {
         if (isMusicPlaying) {
@@ -172,6 +318,115 @@ private void toggleMusic() {
 
 
     
+    private void boardPainted() {
+        if (paintPendingNanos != 0) {
+            latency.record(LatencyMonitor.Stage.PAINT, System.nanoTime() - paintPendingNanos);
+            paintPendingNanos = 0;
+            SwingUtilities.invokeLater(this::refreshLatencyOverlay);
+        }
+    }
+
+    private void refreshLatencyOverlay() {
+        if (!latencyOverlayShown) {
+            boardCanvas.setOverlay(null);
+            return;
+        }
+        String[] stages = latency.summary();
+        String[] lines = new String[stages.length + 1];
+        lines[0] = "latency ms    (F4: dump to " + LATENCY_FILE + ")";
+        System.arraycopy(stages, 0, lines, 1, stages.length);
+        boardCanvas.setOverlay(lines);
+    }
+
+    private void dumpLatency() {
+        Path file = Paths.get(LATENCY_FILE);
+        try {
+            latency.dump(file);
+            System.out.println("[LATENCY] Samples written to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("[LATENCY] Could not write " + file + ": " + e.getMessage());
+        }
+    }
+    
+    private void toggleHints() {
+        hintsEnabled = !hintsEnabled;
+        hintsToggleButton.setText(hintsEnabled ? "💡 Hints: ON" : "💡 Hints: OFF");
+        if (!hintsEnabled) {
+            analysisLabel.setText(" ");
+        }
+        try {
+            synchronized (out) {
+                out.writeObject(ChessMessage.createAnalysisRequest(hintsEnabled));
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Legal targets for each of our pieces, computed on the receiving thread so a click only
+     * reads a mask. Nothing is computed while the opponent is to move. Validation probes moves
+     * on the board it checks, so it works on its own copy rather than the displayed one.
+     */
+    private long[] findLegalTargets(BoardSnapshot snapshot) {
+        if (snapshot.getCurrentTurn() != myColor || snapshot.isGameOver()) {
+            return NO_LEGAL_MOVES;
+        }
+        long[] targets = legalMoveCache.get(snapshot.getZobristKey());
+        if (targets != null) {
+            return targets;
+        }
+        ChessBoard position = snapshot.toBoard();
+        targets = new long[64];
+        for (int from = 0; from < 64; from++) {
+            ChessPiece piece = position.getPiece(from / 8, from % 8);
+            if (piece == null || piece.getColor() != myColor) {
+                continue;
+            }
+            for (int to = 0; to < 64; to++) {
+                if (position.isValidMove(from / 8, from % 8, to / 8, to % 8)) {
+                    targets[from] |= 1L << to;
+                }
+            }
+        }
+        legalMoveCache.put(snapshot.getZobristKey(), targets);
+        return targets;
+    }
+
+    private void updateMoveCountLabel() {
+        if (board == null) {
+            return;
+        }
+        String text = "Move: " + board.getMoveCount();
+        if (clockMillis != null) {
+            long elapsed = gameOver || !clockTimer.isRunning() ? 0 : (System.nanoTime() - clockReceivedNanos) / 1_000_000;
+            long white = clockMillis[0] - (board.getCurrentTurn() == PieceColor.WHITE ? elapsed : 0);
+            long black = clockMillis[1] - (board.getCurrentTurn() == PieceColor.BLACK ? elapsed : 0);
+            text += "   |   White " + formatClock(white) + "   Black " + formatClock(black);
+        }
+        moveCountLabel.setText(text);
+    }
+
+    private static String formatClock(long millis) {
+        long seconds = Math.max(0, millis) / 1000;
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+    
+    private String formatAnalysis(ChessMessage message) {
+        int score = message.getAnalysisScore();
+        String eval;
+        if (Searcher.isMateScore(score)) {
+            int plies = Searcher.matePlies(score);
+            eval = (plies >= 0 ? "#" : "#-") + ((Math.abs(plies) + 1) / 2);
+        } else {
+            eval = String.format("%+.2f", score / 100.0);
+        }
+        String depth = "search".equals(message.getAnalysisSource()) ? 
+            "depth " + message.getAnalysisDepth() : message.getAnalysisSource();
+        return "Eval " + eval + "  |  " + depth + "  |  " + message.getPrincipalVariation();
+    }
+    
     private void initializeBackgroundMusic() {
         try {
             File musicFile = new File("C:\\Users\\lajmi\\Downloads\\Conan.wav");
@@ -256,110 +511,19 @@ private void toggleMusic() {
         }
     }
 
-    class ChessSquarePanel extends JPanel {
-        private Color baseColor;
-        private Color currentColor;
-        private String pieceSymbol = "";
-        private boolean showDot = false;
-        private boolean isSelected = false;
-        private boolean isInCheck = false;
-        private int row, col;
-        
-        public ChessSquarePanel(Color color, int row, int col) {
-            this.baseColor = color;
-            this.currentColor = color;
-            this.row = row;
-            this.col = col;
-            setPreferredSize(new Dimension(85, 85));
-            setBackground(color);
-        }
-        
-        public void setPieceSymbol(String symbol) {
-            this.pieceSymbol = symbol;
-            repaint();
-        }
-        
-        public void setShowDot(boolean show) {
-            this.showDot = show;
-            repaint();
-        }
-        
-        public void setSelected(boolean selected) {
-            this.isSelected = selected;
-            this.currentColor = selected ? SELECTED_HIGHLIGHT : baseColor;
-            setBackground(currentColor);
-            repaint();
-        }
-        
-        public void setInCheck(boolean inCheck) {
-            this.isInCheck = inCheck;
-            this.currentColor = inCheck ? CHECK_HIGHLIGHT : baseColor;
-            setBackground(currentColor);
-            repaint();
-        }
-        
-        public void resetToBase() {
-            this.currentColor = baseColor;
-            this.showDot = false;
-            this.isSelected = false;
-            this.isInCheck = false;
-            setBackground(baseColor);
-            repaint();
-        }
-        
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-            
-            int width = getWidth();
-            int height = getHeight();
-            
-            g2.setColor(currentColor);
-            g2.fillRect(0, 0, width, height);
-            
-            if (isInCheck) {
-                g2.setColor(CHECK_BORDER);
-                g2.setStroke(new BasicStroke(5));
-                g2.drawRect(2, 2, width - 4, height - 4);
-            }
-            
-            if (!pieceSymbol.isEmpty()) {
-                g2.setColor(isInCheck ? Color.BLACK : PIECE_COLOR);
-                g2.setFont(new Font("Arial Unicode MS", isInCheck ? Font.BOLD : Font.PLAIN, isInCheck ? 56 : 50));
-                FontMetrics fm = g2.getFontMetrics();
-                int x = (width - fm.stringWidth(pieceSymbol)) / 2;
-                int y = ((height - fm.getHeight()) / 2) + fm.getAscent();
-                g2.drawString(pieceSymbol, x, y);
-            }
-            
-            if (showDot && pieceSymbol.isEmpty()) {
-                g2.setColor(VALID_MOVE_DOT);
-                int dotSize = 18;
-                g2.fillOval((width - dotSize) / 2, (height - dotSize) / 2, dotSize, dotSize);
-            }
-            
-            if (showDot && !pieceSymbol.isEmpty()) {
-                g2.setColor(VALID_MOVE_DOT);
-                g2.setStroke(new BasicStroke(5));
-                g2.drawOval(5, 5, width - 10, height - 10);
-            }
-        }
-    }
-
     private void connectToServer() {
         try {
-            socket = new Socket(SERVER_HOST, SERVER_PORT);
+            socket = new Socket(SERVER_HOST, SPECTATE ? SPECTATOR_PORT : SERVER_PORT);
             out = new ObjectOutputStream(socket.getOutputStream());
             out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
+            in = new ObjectInputStream(latency.watch(socket.getInputStream()));
+            // The stream header is not a message
+            latency.takeArrival(0);
             
             new Thread(() -> receiveMessages()).start();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, 
-                "Unable to connect to server.\n\nServer: " + SERVER_HOST + ":" + SERVER_PORT + 
+                "Unable to connect to server.\n\nServer: " + SERVER_HOST + ":" + (SPECTATE ? SPECTATOR_PORT : SERVER_PORT) + 
                 "\n\nPlease make sure the server is running!", 
                 "Connection Failed", 
                 JOptionPane.ERROR_MESSAGE);
@@ -367,30 +531,115 @@ private void toggleMusic() {
         }
     }
 
+    /**
+     * Pings the server at the interval it asked for, so it can tell an idle player from a dead
+     * connection, and drops the connection once the server has been silent for several.
+     */
+    private void startHeartbeat(long intervalMillis) {
+        heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                if ((System.nanoTime() - lastHeardNanos) / 1_000_000 > HEARTBEAT_MISSES * intervalMillis) {
+                    System.err.println("[CLIENT] Server stopped answering, closing the connection");
+                    heartbeat.shutdown();
+                    socket.close();
+                    return;
+                }
+                synchronized (out) {
+                    out.writeObject(ChessMessage.createPing());
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The receiving thread reports the broken connection
+                heartbeat.shutdown();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
     private void receiveMessages() {
         try {
             while (true) {
                 ChessMessage message = (ChessMessage) in.readObject();
+                long decodedNanos = System.nanoTime();
+                long arrivedNanos = latency.takeArrival(decodedNanos);
+                lastHeardNanos = decodedNanos;
                 
                 switch (message.getType()) {
                     case PLAYER_ASSIGNED:
                         myColor = message.getPlayerColor();
-                        String colorEmoji = myColor == PieceColor.WHITE ? "♔" : "♚";
-                        colorLabel.setText("You are playing as " + myColor + " " + colorEmoji);
-                        colorLabel.setForeground(myColor == PieceColor.WHITE ? 
-                            new Color(255, 255, 255) : new Color(150, 150, 150));
-                        statusLabel.setText("Waiting for opponent to join...");
+                        if (myColor == null) {
+                            colorLabel.setText("Spectating");
+                            statusLabel.setText("Waiting for the next move...");
+                        } else {
+                            String colorEmoji = myColor == PieceColor.WHITE ? "♔" : "♚";
+                            colorLabel.setText("You are playing as " + myColor + " " + colorEmoji);
+                            colorLabel.setForeground(myColor == PieceColor.WHITE ? 
+                                new Color(255, 255, 255) : new Color(150, 150, 150));
+                            statusLabel.setText("Waiting for opponent to join...");
+                        }
+                        if (message.getHeartbeatMillis() > 0) {
+                            startHeartbeat(message.getHeartbeatMillis());
+                        }
                         break;
+
+                    case PONG:
+                        break;
+
+                    case CONNECTION_REJECTED:
+                        String reason = message.getReason();
+                        SwingUtilities.invokeLater(() -> {
+                            JOptionPane.showMessageDialog(this,
+                                "The server is not accepting connections right now.\n\nReason: " + reason +
+                                "\n\nPlease try again in a moment.",
+                                "Server Busy", JOptionPane.WARNING_MESSAGE);
+                            System.exit(0);
+                        });
+                        return;
                         
                     case BOARD_UPDATE:
-                        board = message.getBoard();
+                        latency.record(LatencyMonitor.Stage.DECODE, decodedNanos - arrivedNanos);
+                        long moveSentNanos = pendingMoveNanos;
+                        if (moveSentNanos != 0 && message.getEchoNanos() == moveSentNanos) {
+                            pendingMoveNanos = 0;
+                            latency.record(LatencyMonitor.Stage.ROUND_TRIP, arrivedNanos - moveSentNanos);
+                            latency.record(LatencyMonitor.Stage.SERVER, message.getServerNanos());
+                        }
+                        ChessBoard serverBoard = message.getBoard().toBoard();
+                        int echoedSequence = message.getMoveSequence();
+                        long[] targets = findLegalTargets(message.getBoard());
+                        long[] clocks = message.hasClocks() ? new long[] {
+                            message.getClockMillis(PieceColor.WHITE), message.getClockMillis(PieceColor.BLACK)
+                        } : null;
+                        long receivedNanos = System.nanoTime();
                         SwingUtilities.invokeLater(() -> {
+                            long dispatchedNanos = System.nanoTime();
+                            latency.record(LatencyMonitor.Stage.DISPATCH, dispatchedNanos - decodedNanos);
+                            paintPendingNanos = dispatchedNanos;
+                            boolean confirmsOwnMove = pendingSequence != 0 && echoedSequence == pendingSequence;
+                            board = reconcile(serverBoard, echoedSequence);
+                            legalTargets = board == serverBoard ? targets : NO_LEGAL_MOVES;
+                            // Any other update settles a queued premove: the server has played it or dropped it
+                            if (premoveFrom != -1 && !confirmsOwnMove) {
+                                premoveFrom = -1;
+                                boardCanvas.clearPremove();
+                            }
+                            clockMillis = clocks;
+                            clockReceivedNanos = receivedNanos;
+                            if (clocks != null && !clockTimer.isRunning()) {
+                                clockTimer.start();
+                            }
+                            if (hintsEnabled) {
+                                analysisLabel.setText("Analysing...");
+                            }
                             updateBoard();
-                            moveCountLabel.setText("Move: " + board.getMoveCount());
+                            updateMoveCountLabel();
                             
                             boolean isMyTurn = board.getCurrentTurn() == myColor;
                             
-                            if (board.isInCheck(board.getCurrentTurn())) {
+                            if (myColor == null) {
+                                boolean inCheck = board.isInCheck(board.getCurrentTurn());
+                                statusLabel.setText(board.getCurrentTurn() + (inCheck ? " is in check" : " to move"));
+                                statusLabel.setForeground(inCheck ? CHECK_HIGHLIGHT : new Color(180, 180, 180));
+                            } else if (board.isInCheck(board.getCurrentTurn())) {
                                 if (isMyTurn) {
                                     statusLabel.setText("YOUR KING IS IN CHECK! Protect your king NOW!");
                                     statusLabel.setForeground(CHECK_HIGHLIGHT);
@@ -410,7 +659,30 @@ private void toggleMusic() {
                         });
                         break;
                         
+                    case MOVE_REJECTED:
+                        ChessBoard restored = message.getBoard().toBoard();
+                        long[] restoredTargets = findLegalTargets(message.getBoard());
+                        int rejectedSequence = message.getMoveSequence();
+                        SwingUtilities.invokeLater(() -> {
+                            if (rejectedSequence != pendingSequence) {
+                                return;
+                            }
+                            pendingSequence = 0;
+                            pendingMoveNanos = 0;
+                            board = restored;
+                            legalTargets = restoredTargets;
+                            updateBoard();
+                            updateMoveCountLabel();
+                            statusLabel.setText("Move not accepted by the server - position restored");
+                            statusLabel.setForeground(CHECK_HIGHLIGHT);
+                        });
+                        break;
+
                     case CHECK_NOTIFICATION:
+                        if (myColor == null) {
+                            // Spectators see check in the status line
+                            break;
+                        }
                         PieceColor colorInCheck = message.getPlayerColor();
                         String checkTitle = (colorInCheck == myColor) ? 
                             "⚠️ CHECK - Your King is Under Attack!" : "✓ Excellent Move!";
@@ -424,22 +696,56 @@ private void toggleMusic() {
                         });
                         break;
                         
+                    case ANALYSIS_UPDATE:
+                        String analysisText = formatAnalysis(message);
+                        SwingUtilities.invokeLater(() -> {
+                            if (hintsEnabled) {
+                                analysisLabel.setText(analysisText);
+                            }
+                        });
+                        break;
+
+                    case CHAT:
+                        if (message.getChatLines() != null) {
+                            showChat(message.getChatLines());
+                        }
+                        break;
+                        
                     case GAME_OVER:
+                        gameOver = true;
                         PieceColor winner = message.getWinner();
-                        boolean iWon = (winner == myColor);
-                        String gameOverTitle = iWon ? "🏆 CHECKMATE - YOU WIN! 🏆" : "Game Over - Checkmate";
-                        String gameOverMessage = iWon ? 
-                            "Congratulations!\n\nYou have defeated your opponent!\n" + winner + " wins by CHECKMATE!" :
-                            "Your opponent has won.\n\n" + winner + " wins by CHECKMATE.\n\nBetter luck next time!";
+                        String reasonText = describeReason(message.getGameOverReason());
+                        String gameOverTitle;
+                        String gameOverMessage;
+                        if (winner == null) {
+                            gameOverTitle = "Game Over - Draw";
+                            gameOverMessage = "The game is drawn by " + reasonText + ".";
+                        } else if (myColor == null) {
+                            gameOverTitle = "Game Over - " + reasonText;
+                            gameOverMessage = winner + " wins by " + reasonText.toUpperCase() + ".";
+                        } else if (winner == myColor) {
+                            gameOverTitle = "🏆 " + reasonText.toUpperCase() + " - YOU WIN! 🏆";
+                            gameOverMessage = "Congratulations!\n\nYou have defeated your opponent!\n" + winner + " wins by " + reasonText.toUpperCase() + "!";
+                        } else {
+                            gameOverTitle = "Game Over - " + reasonText;
+                            gameOverMessage = "Your opponent has won.\n\n" + winner + " wins by " + reasonText.toUpperCase() + ".\n\nBetter luck next time!";
+                        }
                         
                         SwingUtilities.invokeLater(() -> {
+                            clockTimer.stop();
+                            statusLabel.setText(gameOverTitle);
                             JOptionPane.showMessageDialog(this, gameOverMessage, gameOverTitle, 
                                 JOptionPane.INFORMATION_MESSAGE);
                         });
                         break;
                 }
             }
-        } catch (EOFException e) {
+        } catch (IOException e) {
+            // A closed stream, a reset, or our own close after missed heartbeats
+            if (gameOver) {
+                // The server closes finished games; keep the final position on screen
+                return;
+            }
             JOptionPane.showMessageDialog(this, 
                 "Connection to server was lost.\n\nThe game has ended.", 
                 "Disconnected", JOptionPane.WARNING_MESSAGE);
@@ -449,7 +755,29 @@ private void toggleMusic() {
         }
     }
 
+    private static String describeReason(GameOverReason reason) {
+        if (reason == null) {
+            return "Checkmate";
+        }
+        switch (reason) {
+            case STALEMATE: return "Stalemate";
+            case THREEFOLD_REPETITION: return "Threefold repetition";
+            case FIFTY_MOVE_RULE: return "Fifty-move rule";
+            case INSUFFICIENT_MATERIAL: return "Insufficient material";
+            case ABANDONED: return "Abandonment";
+            case TIMEOUT: return "Time forfeit";
+            default: return "Checkmate";
+        }
+    }
+
     private void handleSquareClick(int row, int col) {
+        if (myColor == null) {
+            return;
+        }
+        if (board != null && !gameOver && board.getCurrentTurn() != myColor) {
+            handlePremoveClick(row, col);
+            return;
+        }
         if (board == null || board.getCurrentTurn() != myColor) {
             if (selectedRow != -1) {
                 clearHighlights();
@@ -463,17 +791,7 @@ private void toggleMusic() {
             if (piece != null && piece.getColor() == myColor) {
                 selectedRow = row;
                 selectedCol = col;
-                boardSquares[row][col].setSelected(true);
-                
-                validMoves.clear();
-                for (int r = 0; r < 8; r++) {
-                    for (int c = 0; c < 8; c++) {
-                        if (board.isValidMove(selectedRow, selectedCol, r, c)) {
-                            validMoves.add(new int[]{r, c});
-                            boardSquares[r][c].setShowDot(true);
-                        }
-                    }
-                }
+                boardCanvas.setSelection(row, col, legalTargets[row * 8 + col]);
             }
         } else {
             ChessPiece piece = board.getPiece(selectedRow, selectedCol);
@@ -500,6 +818,42 @@ private void toggleMusic() {
         }
     }
     
+    /**
+     * Clicks during the opponent's turn pick a premove, which the server plays as soon as the
+     * opponent has moved if it is legal then. Premoved pawns promote to a queen; clicking the
+     * premoved piece again cancels.
+     */
+    private void handlePremoveClick(int row, int col) {
+        ChessPiece piece = board.getPiece(row, col);
+        if (selectedRow == -1 && premoveFrom == row * 8 + col) {
+            sendPremove(ChessMessage.createPremoveCancel());
+            premoveFrom = -1;
+            boardCanvas.clearPremove();
+            statusLabel.setText("Premove cancelled");
+            return;
+        }
+        if (piece != null && piece.getColor() == myColor) {
+            selectedRow = row;
+            selectedCol = col;
+            boardCanvas.setSelection(row, col, 0);
+            statusLabel.setText("Premove: choose a square");
+            return;
+        }
+        if (selectedRow == -1) {
+            statusLabel.setText("Please wait for your turn...");
+            return;
+        }
+        ChessMessage premove = ChessMessage.createPremoveMessage(selectedRow, selectedCol, row, col);
+        if (board.getPiece(selectedRow, selectedCol).getType() == PieceType.PAWN && (row == 0 || row == 7)) {
+            premove.setPromotionType(PieceType.QUEEN);
+        }
+        sendPremove(premove);
+        premoveFrom = selectedRow * 8 + selectedCol;
+        boardCanvas.setPremove(premoveFrom, row * 8 + col);
+        statusLabel.setText("Premove queued - click the piece again to cancel");
+        clearHighlights();
+    }
+
     private void showPromotionDialog() {
         JDialog dialog = new JDialog(this, "Pawn Promotion", true);
         dialog.setUndecorated(false);
@@ -545,58 +899,95 @@ button.setCursor(new Cursor(Cursor.HAND_CURSOR));
     }
     
     private void sendMove(int fromRow, int fromCol, int toRow, int toCol, PieceType promotion) {
+        int sequence = ++moveSequence;
         try {
             ChessMessage move = ChessMessage.createMoveMessage(fromRow, fromCol, toRow, toCol);
             if (promotion != null) {
                 move.setPromotionType(promotion);
             }
-            out.writeObject(move);
-            out.flush();
+            move.setMoveSequence(sequence);
+            synchronized (out) {
+                long sentNanos = System.nanoTime();
+                move.setSentNanos(sentNanos);
+                pendingMoveNanos = sentNanos;
+                out.writeObject(move);
+                out.flush();
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
+        showPredictedMove(sequence, Move.encode(fromRow, fromCol, toRow, toCol, promotion));
     }
 
-    private void clearHighlights() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                boardSquares[i][j].resetToBase();
+    /**
+     * Shows a move the local board accepts without waiting for the server. The update that
+     * echoes its sequence number confirms it and a MOVE_REJECTED rolls it back.
+     */
+    private void showPredictedMove(int sequence, int move) {
+        if ((legalTargets[Move.fromSquare(move)] & 1L << Move.toSquare(move)) == 0) {
+            return;
+        }
+        ChessBoard predicted = board.copy();
+        if (!predicted.makeMove(Move.fromRow(move), Move.fromCol(move), Move.toRow(move), Move.toCol(move),
+                                Move.promotion(move))) {
+            return;
+        }
+        if (clockMillis != null) {
+            // Stop our displayed clock where it is; the server's update restarts it from its own reading
+            long now = System.nanoTime();
+            clockMillis = clockMillis.clone();
+            clockMillis[myColor.ordinal()] -= (now - clockReceivedNanos) / 1_000_000;
+            clockReceivedNanos = now;
+        }
+        pendingSequence = sequence;
+        pendingMove = move;
+        board = predicted;
+        legalTargets = NO_LEGAL_MOVES;
+        updateBoard();
+        updateMoveCountLabel();
+        statusLabel.setText("Opponent is thinking...");
+        statusLabel.setForeground(new Color(180, 180, 180));
+    }
+
+    /**
+     * The position to show for a server update. An update echoing the pending move confirms
+     * it; one sent before the server reached that move gets it replayed on top.
+     */
+    private ChessBoard reconcile(ChessBoard serverBoard, int echoedSequence) {
+        if (pendingSequence == 0 || echoedSequence == pendingSequence) {
+            pendingSequence = 0;
+            return serverBoard;
+        }
+        ChessBoard predicted = serverBoard.copy();
+        if (predicted.makeMove(Move.fromRow(pendingMove), Move.fromCol(pendingMove), Move.toRow(pendingMove),
+                               Move.toCol(pendingMove), Move.promotion(pendingMove))) {
+            return predicted;
+        }
+        pendingSequence = 0;
+        return serverBoard;
+    }
+
+    private void sendPremove(ChessMessage premove) {
+        try {
+            synchronized (out) {
+                out.writeObject(premove);
+                out.flush();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
+
+    private void clearHighlights() {
+        boardCanvas.clearSelection();
         selectedRow = -1;
         selectedCol = -1;
-        validMoves.clear();
     }
 
     private void updateBoard() {
         clearHighlights();
-        
-        int[] whiteKingPos = board.isInCheck(PieceColor.WHITE) ? findKingPosition(PieceColor.WHITE) : null;
-        int[] blackKingPos = board.isInCheck(PieceColor.BLACK) ? findKingPosition(PieceColor.BLACK) : null;
-        
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPiece piece = board.getPiece(i, j);
-                boardSquares[i][j].setPieceSymbol(piece != null ? piece.getSymbol() : "");
-                
-                if ((whiteKingPos != null && i == whiteKingPos[0] && j == whiteKingPos[1]) ||
-                    (blackKingPos != null && i == blackKingPos[0] && j == blackKingPos[1])) {
-                    boardSquares[i][j].setInCheck(true);
-                }
-            }
-        }
-    }
-    
-    private int[] findKingPosition(PieceColor color) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPiece piece = board.getPiece(i, j);
-                if (piece != null && piece.getType() == PieceType.KING && piece.getColor() == color) {
-                    return new int[]{i, j};
-                }
-            }
-        }
-        return null;
+        boardCanvas.setPosition(board);
     }
 
     public static void main(String[] args) {
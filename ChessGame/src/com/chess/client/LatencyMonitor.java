@@ -0,0 +1,125 @@
+package com.chess.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Client-side timings for each stage between a move leaving the client and the resulting
+ * position reaching the screen. Each stage keeps its most recent samples in a ring buffer.
+ */
+public class LatencyMonitor {
+    private static final int WINDOW = 512;
+
+    public enum Stage {
+        ROUND_TRIP("send->ack"),
+        SERVER("server"),
+        DECODE("read->decode"),
+        DISPATCH("decode->EDT"),
+        PAINT("EDT->paint");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final long[][] samples = new long[Stage.values().length][WINDOW];
+    private final long[] counts = new long[Stage.values().length];
+    private volatile long arrivalNanos;
+
+    /** Wraps the socket stream so the arrival of each message's first byte is timed. */
+    public InputStream watch(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                markArrival(b >= 0 ? 1 : 0);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                markArrival(n);
+                return n;
+            }
+        };
+    }
+
+    private void markArrival(int bytesRead) {
+        if (bytesRead > 0 && arrivalNanos == 0) {
+            arrivalNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns when the first byte of the message just decoded arrived and starts timing the
+     * next one. Call once after every readObject.
+     */
+    public long takeArrival(long decodedNanos) {
+        long arrived = arrivalNanos;
+        arrivalNanos = 0;
+        return arrived != 0 ? arrived : decodedNanos;
+    }
+
+    public synchronized void record(Stage stage, long nanos) {
+        int i = stage.ordinal();
+        samples[i][(int) (counts[i] % WINDOW)] = Math.max(0, nanos);
+        counts[i]++;
+    }
+
+    /** One line per stage with the last, mean, 95th percentile and worst sample, in ms. */
+    public synchronized String[] summary() {
+        Stage[] stages = Stage.values();
+        String[] lines = new String[stages.length];
+        for (Stage stage : stages) {
+            long[] window = window(stage);
+            if (window.length == 0) {
+                lines[stage.ordinal()] = String.format("%-13s      -", stage.label);
+                continue;
+            }
+            long last = samples[stage.ordinal()][(int) ((counts[stage.ordinal()] - 1) % WINDOW)];
+            Arrays.sort(window);
+            long total = 0;
+            for (long sample : window) {
+                total += sample;
+            }
+            lines[stage.ordinal()] = String.format("%-13s %6.1f avg %6.1f p95 %6.1f max %6.1f",
+                stage.label, millis(last), millis(total / window.length),
+                millis(window[(window.length - 1) * 95 / 100]), millis(window[window.length - 1]));
+        }
+        return lines;
+    }
+
+    /** Writes the summary followed by every retained sample as CSV. */
+    public synchronized void dump(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (String line : summary()) {
+                writer.println("# " + line);
+            }
+            writer.println("stage,sample,millis");
+            for (Stage stage : Stage.values()) {
+                long count = counts[stage.ordinal()];
+                for (long n = Math.max(0, count - WINDOW); n < count; n++) {
+                    writer.printf("%s,%d,%.3f%n", stage.name(), n,
+                                  millis(samples[stage.ordinal()][(int) (n % WINDOW)]));
+                }
+            }
+        }
+    }
+
+    private long[] window(Stage stage) {
+        int i = stage.ordinal();
+        return Arrays.copyOf(samples[i], (int) Math.min(counts[i], WINDOW));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
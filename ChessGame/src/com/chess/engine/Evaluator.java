@@ -0,0 +1,289 @@
+package com.chess.engine;
+
+import com.chess.model.Attacks;
+
+/**
+ * Static evaluation: material and piece-square tables (read from the incrementally
+ * maintained totals in {@link Position}), mobility, pawn structure (cached in a
+ * {@link PawnHashTable}) and king safety, tapered between middlegame and endgame
+ * by the remaining material. Scores are centipawns from the side to move's view.
+ * Not thread-safe; use one instance per search thread.
+ */
+public class Evaluator {
+    // Indexed by PieceType ordinal: PAWN, ROOK, KNIGHT, BISHOP, QUEEN, KING
+    static final int[] MG_VALUE = {100, 500, 320, 330, 900, 0};
+    static final int[] EG_VALUE = {120, 520, 300, 320, 920, 0};
+    static final int[] PHASE_WEIGHT = {0, 2, 1, 1, 4, 0};
+    static final int TOTAL_PHASE = 24;
+
+    // Piece-square tables from White's side, index 0 = a8 (row 0, col 0)
+    private static final int[] PAWN_PST = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+    private static final int[] PAWN_EG_PST = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+    private static final int[] KNIGHT_PST = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP_PST = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK_PST = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0
+    };
+    private static final int[] QUEEN_PST = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+    private static final int[] KING_MG_PST = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20
+    };
+    private static final int[] KING_EG_PST = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // Material plus piece-square value, from White's side; Black uses square ^ 56
+    static final int[][] MG_TABLE = new int[6][64];
+    static final int[][] EG_TABLE = new int[6][64];
+
+    static {
+        int[][] mg = {PAWN_PST, ROOK_PST, KNIGHT_PST, BISHOP_PST, QUEEN_PST, KING_MG_PST};
+        int[][] eg = {PAWN_EG_PST, ROOK_PST, KNIGHT_PST, BISHOP_PST, QUEEN_PST, KING_EG_PST};
+        for (int type = 0; type < 6; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                MG_TABLE[type][sq] = MG_VALUE[type] + mg[type][sq];
+                EG_TABLE[type][sq] = EG_VALUE[type] + eg[type][sq];
+            }
+        }
+    }
+
+    private static final int[] MOBILITY_MG = {0, 2, 4, 5, 1, 0};
+    private static final int[] MOBILITY_EG = {0, 4, 4, 5, 2, 0};
+    // Indexed by rank counted from the pawn's own side: 1 is its starting rank, 6 the 7th
+    private static final int[] PASSED_MG = {0, 5, 10, 20, 35, 60, 100, 0};
+    private static final int[] PASSED_EG = {0, 10, 20, 40, 70, 120, 200, 0};
+    private static final int DOUBLED_MG = -10;
+    private static final int DOUBLED_EG = -20;
+    private static final int ISOLATED_MG = -10;
+    private static final int ISOLATED_EG = -15;
+    private static final int SHIELD_PAWN = 12;
+    private static final int[] KING_ATTACK_PENALTY = {0, 0, 10, 25, 45, 70, 100, 135, 175, 220};
+
+    private final PawnHashTable pawnTable;
+    private final int[] pawnScores = new int[2];
+    private final int[] attackUnits = new int[2];
+
+    public Evaluator() {
+        this(1 << 14);
+    }
+
+    public Evaluator(int pawnTableSize) {
+        this.pawnTable = new PawnHashTable(pawnTableSize);
+    }
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+
+    /** Material and piece-square terms only; O(1) from the incremental totals. */
+    public int evaluateMaterial(Position position) {
+        int phase = Math.min(position.phase, TOTAL_PHASE);
+        int score = (position.mgScore * phase + position.egScore * (TOTAL_PHASE - phase)) / TOTAL_PHASE;
+        return position.sideToMove == Position.WHITE ? score : -score;
+    }
+
+    public int evaluate(Position position) {
+        int mg = position.mgScore;
+        int eg = position.egScore;
+
+        if (!pawnTable.probe(position.pawnKey, pawnScores)) {
+            evaluatePawns(position, pawnScores);
+            pawnTable.store(position.pawnKey, pawnScores[0], pawnScores[1]);
+        }
+        mg += pawnScores[0];
+        eg += pawnScores[1];
+
+        long whiteZone = kingZone(position.kingSquare[Position.WHITE]);
+        long blackZone = kingZone(position.kingSquare[Position.BLACK]);
+        attackUnits[0] = 0;
+        attackUnits[1] = 0;
+        int mobilityMg = 0;
+        int mobilityEg = 0;
+        int[] squares = position.squares;
+        long occupied = position.occupancy[Position.WHITE] | position.occupancy[Position.BLACK];
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = squares[sq];
+            if (piece == 0) {
+                continue;
+            }
+            int type = Position.type(piece);
+            if (type == Position.PAWN || type == Position.KING) {
+                continue;
+            }
+            int color = Position.color(piece);
+            long enemyZone = color == Position.WHITE ? blackZone : whiteZone;
+            long attacks = Position.attacks(type, sq, occupied);
+            int moves = Long.bitCount(attacks & ~position.occupancy[color]);
+            int zoneHits = Long.bitCount(attacks & enemyZone);
+            int sign = color == Position.WHITE ? 1 : -1;
+            mobilityMg += sign * MOBILITY_MG[type] * moves;
+            mobilityEg += sign * MOBILITY_EG[type] * moves;
+            if (zoneHits > 0) {
+                attackUnits[color] += zoneHits * (type == Position.QUEEN ? 2 : 1);
+            }
+        }
+        mg += mobilityMg;
+        eg += mobilityEg;
+
+        mg += kingSafety(position, Position.WHITE) - kingSafety(position, Position.BLACK);
+
+        int phase = Math.min(position.phase, TOTAL_PHASE);
+        int score = (mg * phase + eg * (TOTAL_PHASE - phase)) / TOTAL_PHASE;
+        return position.sideToMove == Position.WHITE ? score : -score;
+    }
+
+    private int kingSafety(Position position, int color) {
+        int king = position.kingSquare[color];
+        int row = king >> 3;
+        int col = king & 7;
+        int homeRow = color == Position.WHITE ? 7 : 0;
+        int score = 0;
+        if (Math.abs(row - homeRow) <= 1) {
+            int forward = color == Position.WHITE ? -1 : 1;
+            int pawn = Position.piece(color, Position.PAWN);
+            for (int c = Math.max(0, col - 1); c <= Math.min(7, col + 1); c++) {
+                int r1 = row + forward;
+                int r2 = row + 2 * forward;
+                if (r1 >= 0 && r1 < 8 && position.squares[r1 * 8 + c] == pawn) {
+                    score += SHIELD_PAWN;
+                } else if (r2 >= 0 && r2 < 8 && position.squares[r2 * 8 + c] == pawn) {
+                    score += SHIELD_PAWN / 2;
+                }
+            }
+        }
+        int units = Math.min(attackUnits[color ^ 1], KING_ATTACK_PENALTY.length - 1);
+        return score - KING_ATTACK_PENALTY[units];
+    }
+
+    private static long kingZone(int sq) {
+        return Attacks.king(sq) | 1L << sq;
+    }
+
+    private void evaluatePawns(Position position, int[] out) {
+        int[][] fileCounts = new int[2][8];
+        int whitePawn = Position.piece(Position.WHITE, Position.PAWN);
+        int blackPawn = Position.piece(Position.BLACK, Position.PAWN);
+        // Rearmost row of each side's pawns per file, for passed-pawn checks
+        int[] whiteMaxRow = {-1, -1, -1, -1, -1, -1, -1, -1};
+        int[] blackMinRow = {8, 8, 8, 8, 8, 8, 8, 8};
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.squares[sq];
+            int row = sq >> 3;
+            int col = sq & 7;
+            if (piece == whitePawn) {
+                fileCounts[0][col]++;
+                whiteMaxRow[col] = Math.max(whiteMaxRow[col], row);
+            } else if (piece == blackPawn) {
+                fileCounts[1][col]++;
+                blackMinRow[col] = Math.min(blackMinRow[col], row);
+            }
+        }
+
+        int mg = 0;
+        int eg = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.squares[sq];
+            if (piece != whitePawn && piece != blackPawn) {
+                continue;
+            }
+            boolean white = piece == whitePawn;
+            int us = white ? 0 : 1;
+            int row = sq >> 3;
+            int col = sq & 7;
+            int sign = white ? 1 : -1;
+            boolean isolated = (col == 0 || fileCounts[us][col - 1] == 0) &&
+                               (col == 7 || fileCounts[us][col + 1] == 0);
+            if (isolated) {
+                mg += sign * ISOLATED_MG;
+                eg += sign * ISOLATED_EG;
+            }
+            boolean passed = true;
+            for (int c = Math.max(0, col - 1); c <= Math.min(7, col + 1) && passed; c++) {
+                passed = white ? blackMinRow[c] >= row : whiteMaxRow[c] <= row;
+            }
+            if (passed) {
+                int advance = white ? 7 - row : row;
+                mg += sign * PASSED_MG[advance];
+                eg += sign * PASSED_EG[advance];
+            }
+        }
+        for (int col = 0; col < 8; col++) {
+            if (fileCounts[0][col] > 1) {
+                mg += DOUBLED_MG * (fileCounts[0][col] - 1);
+                eg += DOUBLED_EG * (fileCounts[0][col] - 1);
+            }
+            if (fileCounts[1][col] > 1) {
+                mg -= DOUBLED_MG * (fileCounts[1][col] - 1);
+                eg -= DOUBLED_EG * (fileCounts[1][col] - 1);
+            }
+        }
+        out[0] = mg;
+        out[1] = eg;
+    }
+}
@@ -0,0 +1,58 @@
+package com.chess.engine;
+
+/**
+ * Direct-mapped cache of pawn-structure scores keyed by the position's pawn hash.
+ * Pawn structure changes on few moves, so most lookups hit.
+ */
+public class PawnHashTable {
+    private final long[] keys;
+    private final int[] mgScores;
+    private final int[] egScores;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    public PawnHashTable(int sizePowerOfTwo) {
+        int size = Integer.highestOneBit(Math.max(sizePowerOfTwo, 16));
+        keys = new long[size];
+        mgScores = new int[size];
+        egScores = new int[size];
+        mask = size - 1;
+    }
+
+    int index(long pawnKey) {
+        return (int) (pawnKey ^ (pawnKey >>> 32)) & mask;
+    }
+
+    boolean probe(long pawnKey, int[] out) {
+        int i = index(pawnKey);
+        if (keys[i] == stored(pawnKey)) {
+            out[0] = mgScores[i];
+            out[1] = egScores[i];
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    // A pawnless position hashes to 0, which would match every empty slot
+    private static long stored(long pawnKey) {
+        return pawnKey == 0 ? 1 : pawnKey;
+    }
+
+    void store(long pawnKey, int mg, int eg) {
+        int i = index(pawnKey);
+        keys[i] = stored(pawnKey);
+        mgScores[i] = mg;
+        egScores[i] = eg;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+}
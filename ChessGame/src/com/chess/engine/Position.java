@@ -0,0 +1,413 @@
+package com.chess.engine;
+
+import com.chess.model.Attacks;
+import com.chess.model.BoardSnapshot;
+import com.chess.model.ChessBoard;
+import com.chess.model.ChessPiece;
+import com.chess.model.Move;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+import com.chess.model.Zobrist;
+
+/**
+ * Search-side copy of a {@link ChessBoard}: a 64-square mailbox with make/unmake.
+ * Squares use the board's row * 8 + col numbering (row 0 is Black's back rank).
+ * Pieces are Zobrist piece indices plus one, 0 is an empty square.
+ * Material and piece-square scores are kept up to date on every piece add/remove.
+ */
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+    public static final int MAX_PLY = 256;
+
+    static final int PAWN = PieceType.PAWN.ordinal();
+    static final int ROOK = PieceType.ROOK.ordinal();
+    static final int KNIGHT = PieceType.KNIGHT.ordinal();
+    static final int BISHOP = PieceType.BISHOP.ordinal();
+    static final int QUEEN = PieceType.QUEEN.ordinal();
+    static final int KING = PieceType.KING.ordinal();
+
+    private static final int[] CASTLE_MASK = new int[64];
+
+    static {
+        java.util.Arrays.fill(CASTLE_MASK, 15);
+        CASTLE_MASK[60] &= ~(Zobrist.WHITE_KINGSIDE | Zobrist.WHITE_QUEENSIDE);
+        CASTLE_MASK[63] &= ~Zobrist.WHITE_KINGSIDE;
+        CASTLE_MASK[56] &= ~Zobrist.WHITE_QUEENSIDE;
+        CASTLE_MASK[4] &= ~(Zobrist.BLACK_KINGSIDE | Zobrist.BLACK_QUEENSIDE);
+        CASTLE_MASK[7] &= ~Zobrist.BLACK_KINGSIDE;
+        CASTLE_MASK[0] &= ~Zobrist.BLACK_QUEENSIDE;
+    }
+
+    final int[] squares = new int[64];
+    final int[] kingSquare = new int[2];
+    // Bitboards kept by addPiece and removePiece: one per piece code (minus one) and per colour
+    final long[] pieceBoards = new long[12];
+    final long[] occupancy = new long[2];
+    int sideToMove;
+    int castling;
+    int epSquare = -1;
+    int halfmoveClock;
+    int ply;
+    long key;
+    long pawnKey;
+
+    // White-minus-black material plus piece-square totals, and the game phase (24 = all pieces on)
+    int mgScore;
+    int egScore;
+    int phase;
+
+    private final int[] undoMove = new int[MAX_PLY];
+    private final int[] undoPiece = new int[MAX_PLY];
+    private final int[] undoCaptured = new int[MAX_PLY];
+    private final int[] undoCastling = new int[MAX_PLY];
+    private final int[] undoEpSquare = new int[MAX_PLY];
+    private final int[] undoHalfmove = new int[MAX_PLY];
+    private final long[] undoKey = new long[MAX_PLY];
+    private final long[] undoPawnKey = new long[MAX_PLY];
+
+    public static Position fromBoard(ChessBoard board) {
+        return fromSnapshot(board.snapshot());
+    }
+
+    public static Position fromSnapshot(BoardSnapshot board) {
+        Position position = new Position();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = board.getPiece(row, col);
+                if (piece != null) {
+                    position.addPiece(Zobrist.pieceIndex(piece.getType(), piece.getColor()) + 1, row * 8 + col);
+                }
+            }
+        }
+        position.sideToMove = board.getCurrentTurn() == PieceColor.WHITE ? WHITE : BLACK;
+        position.castling = board.getCastlingRights();
+        position.halfmoveClock = board.getHalfmoveClock();
+        int epCol = board.getEnPassantTargetCol();
+        if (epCol != -1) {
+            // The pawn that just double-stepped belongs to the side not to move
+            position.epSquare = position.capturableEnPassant((position.sideToMove == WHITE ? 2 : 5) * 8 + epCol,
+                                                             position.sideToMove);
+        }
+        position.key ^= Zobrist.castling(position.castling);
+        if (position.epSquare != -1) {
+            position.key ^= Zobrist.enPassant(epCol);
+        }
+        if (position.sideToMove == BLACK) {
+            position.key ^= Zobrist.blackToMove();
+        }
+        return position;
+    }
+
+    static int color(int piece) {
+        return (piece - 1) / 6;
+    }
+
+    static int type(int piece) {
+        return (piece - 1) % 6;
+    }
+
+    static int piece(int color, int type) {
+        return color * 6 + type + 1;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    private void addPiece(int piece, int sq) {
+        squares[sq] = piece;
+        int index = piece - 1;
+        pieceBoards[index] |= 1L << sq;
+        occupancy[color(piece)] |= 1L << sq;
+        key ^= Zobrist.piece(index, sq);
+        int type = type(piece);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(index, sq);
+        } else if (type == KING) {
+            kingSquare[color(piece)] = sq;
+        }
+        if (color(piece) == WHITE) {
+            mgScore += Evaluator.MG_TABLE[type][sq];
+            egScore += Evaluator.EG_TABLE[type][sq];
+        } else {
+            mgScore -= Evaluator.MG_TABLE[type][sq ^ 56];
+            egScore -= Evaluator.EG_TABLE[type][sq ^ 56];
+        }
+        phase += Evaluator.PHASE_WEIGHT[type];
+    }
+
+    private void removePiece(int sq) {
+        int piece = squares[sq];
+        squares[sq] = 0;
+        int index = piece - 1;
+        pieceBoards[index] &= ~(1L << sq);
+        occupancy[color(piece)] &= ~(1L << sq);
+        key ^= Zobrist.piece(index, sq);
+        int type = type(piece);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(index, sq);
+        }
+        if (color(piece) == WHITE) {
+            mgScore -= Evaluator.MG_TABLE[type][sq];
+            egScore -= Evaluator.EG_TABLE[type][sq];
+        } else {
+            mgScore += Evaluator.MG_TABLE[type][sq ^ 56];
+            egScore += Evaluator.EG_TABLE[type][sq ^ 56];
+        }
+        phase -= Evaluator.PHASE_WEIGHT[type];
+    }
+
+    private void movePiece(int from, int to) {
+        int piece = squares[from];
+        removePiece(from);
+        addPiece(piece, to);
+    }
+
+    public void makeMove(int move) {
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        int piece = squares[from];
+        int type = type(piece);
+        int us = sideToMove;
+
+        undoMove[ply] = move;
+        undoPiece[ply] = piece;
+        undoCastling[ply] = castling;
+        undoEpSquare[ply] = epSquare;
+        undoHalfmove[ply] = halfmoveClock;
+        undoKey[ply] = key;
+        undoPawnKey[ply] = pawnKey;
+
+        int captured = squares[to];
+        if (type == PAWN && to == epSquare) {
+            int victim = to + (us == WHITE ? 8 : -8);
+            captured = squares[victim];
+            removePiece(victim);
+        } else if (captured != 0) {
+            removePiece(to);
+        }
+        undoCaptured[ply] = captured;
+
+        movePiece(from, to);
+        if (type == KING && Math.abs(to - from) == 2) {
+            if (to > from) {
+                movePiece(to + 1, to - 1);
+            } else {
+                movePiece(to - 2, to + 1);
+            }
+        }
+        PieceType promotion = Move.promotion(move);
+        if (type == PAWN && (to >> 3 == 0 || to >> 3 == 7)) {
+            removePiece(to);
+            addPiece(piece(us, promotion == null ? QUEEN : promotion.ordinal()), to);
+        }
+
+        key ^= Zobrist.castling(castling);
+        castling &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        key ^= Zobrist.castling(castling);
+        if (epSquare != -1) {
+            key ^= Zobrist.enPassant(epSquare & 7);
+        }
+        epSquare = -1;
+        if (type == PAWN && Math.abs(to - from) == 16) {
+            epSquare = capturableEnPassant((from + to) / 2, us ^ 1);
+            if (epSquare != -1) {
+                key ^= Zobrist.enPassant(epSquare & 7);
+            }
+        }
+        halfmoveClock = (type == PAWN || captured != 0) ? 0 : halfmoveClock + 1;
+        sideToMove ^= 1;
+        key ^= Zobrist.blackToMove();
+        ply++;
+    }
+
+    /**
+     * The en-passant square if a pawn of the given side can capture onto it, otherwise -1.
+     * An uncapturable one is dropped so it neither reaches the key nor tells positions apart.
+     */
+    private int capturableEnPassant(int square, int side) {
+        return (Attacks.pawn(side ^ 1, square) & pieceBoards[side * 6 + PAWN]) != 0 ? square : -1;
+    }
+
+    public void unmakeMove() {
+        ply--;
+        int move = undoMove[ply];
+        int from = Move.fromSquare(move);
+        int to = Move.toSquare(move);
+        int piece = undoPiece[ply];
+        sideToMove ^= 1;
+
+        removePiece(to);
+        addPiece(piece, from);
+        int type = type(piece);
+        if (type == KING && Math.abs(to - from) == 2) {
+            if (to > from) {
+                movePiece(to - 1, to + 1);
+            } else {
+                movePiece(to + 1, to - 2);
+            }
+        }
+        int captured = undoCaptured[ply];
+        if (captured != 0) {
+            if (type == PAWN && to == undoEpSquare[ply]) {
+                addPiece(captured, to + (sideToMove == WHITE ? 8 : -8));
+            } else {
+                addPiece(captured, to);
+            }
+        }
+
+        castling = undoCastling[ply];
+        epSquare = undoEpSquare[ply];
+        halfmoveClock = undoHalfmove[ply];
+        key = undoKey[ply];
+        pawnKey = undoPawnKey[ply];
+    }
+
+    public boolean isInCheck() {
+        return isAttacked(kingSquare[sideToMove], sideToMove ^ 1);
+    }
+
+    public boolean isAttacked(int sq, int by) {
+        long occupied = occupancy[WHITE] | occupancy[BLACK];
+        int base = by * 6;
+        long queens = pieceBoards[base + QUEEN];
+        return (Attacks.pawn(by ^ 1, sq) & pieceBoards[base + PAWN]) != 0 ||
+               (Attacks.knight(sq) & pieceBoards[base + KNIGHT]) != 0 ||
+               (Attacks.king(sq) & pieceBoards[base + KING]) != 0 ||
+               (Attacks.rook(sq, occupied) & (pieceBoards[base + ROOK] | queens)) != 0 ||
+               (Attacks.bishop(sq, occupied) & (pieceBoards[base + BISHOP] | queens)) != 0;
+    }
+
+    /** Attack set of a non-pawn piece type standing on sq. */
+    static long attacks(int type, int sq, long occupied) {
+        if (type == KNIGHT) {
+            return Attacks.knight(sq);
+        } else if (type == BISHOP) {
+            return Attacks.bishop(sq, occupied);
+        } else if (type == ROOK) {
+            return Attacks.rook(sq, occupied);
+        } else if (type == QUEEN) {
+            return Attacks.queen(sq, occupied);
+        }
+        return Attacks.king(sq);
+    }
+
+    /** Writes pseudo-legal moves into the buffer and returns how many there are. */
+    public int generatePseudoLegal(int[] moves) {
+        int n = 0;
+        int us = sideToMove;
+        long own = occupancy[us];
+        long occupied = own | occupancy[us ^ 1];
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            int type = type(squares[from]);
+            if (type == PAWN) {
+                n = pawnMoves(from, moves, n);
+                continue;
+            }
+            for (long targets = attacks(type, from, occupied) & ~own; targets != 0; targets &= targets - 1) {
+                moves[n++] = (from << 6) | Long.numberOfTrailingZeros(targets);
+            }
+            if (type == KING) {
+                n = castlingMoves(from, moves, n);
+            }
+        }
+        return n;
+    }
+
+    private int pawnMoves(int from, int[] moves, int n) {
+        int us = sideToMove;
+        int forward = us == WHITE ? -8 : 8;
+        int row = from >> 3;
+        int col = from & 7;
+        int one = from + forward;
+        if (squares[one] == 0) {
+            n = addPawnMove(from, one, moves, n);
+            int startRow = us == WHITE ? 6 : 1;
+            if (row == startRow && squares[one + forward] == 0) {
+                moves[n++] = (from << 6) | (one + forward);
+            }
+        }
+        for (int dc = -1; dc <= 1; dc += 2) {
+            if (col + dc < 0 || col + dc > 7) {
+                continue;
+            }
+            int to = one + dc;
+            int target = squares[to];
+            if ((target != 0 && color(target) != us) || to == epSquare) {
+                n = addPawnMove(from, to, moves, n);
+            }
+        }
+        return n;
+    }
+
+    private int addPawnMove(int from, int to, int[] moves, int n) {
+        int base = (from << 6) | to;
+        if (to >> 3 == 0 || to >> 3 == 7) {
+            moves[n++] = base | ((QUEEN + 1) << 12);
+            moves[n++] = base | ((ROOK + 1) << 12);
+            moves[n++] = base | ((BISHOP + 1) << 12);
+            moves[n++] = base | ((KNIGHT + 1) << 12);
+        } else {
+            moves[n++] = base;
+        }
+        return n;
+    }
+
+    private int castlingMoves(int from, int[] moves, int n) {
+        int us = sideToMove;
+        int home = us == WHITE ? 60 : 4;
+        if (from != home || castling == 0) {
+            return n;
+        }
+        int them = us ^ 1;
+        int kingside = us == WHITE ? Zobrist.WHITE_KINGSIDE : Zobrist.BLACK_KINGSIDE;
+        int queenside = us == WHITE ? Zobrist.WHITE_QUEENSIDE : Zobrist.BLACK_QUEENSIDE;
+        if ((castling & (kingside | queenside)) == 0 || isAttacked(home, them)) {
+            return n;
+        }
+        if ((castling & kingside) != 0 && squares[home + 1] == 0 && squares[home + 2] == 0 &&
+            !isAttacked(home + 1, them) && !isAttacked(home + 2, them)) {
+            moves[n++] = (home << 6) | (home + 2);
+        }
+        if ((castling & queenside) != 0 && squares[home - 1] == 0 && squares[home - 2] == 0 &&
+            squares[home - 3] == 0 && !isAttacked(home - 1, them) && !isAttacked(home - 2, them)) {
+            moves[n++] = (home << 6) | (home - 2);
+        }
+        return n;
+    }
+
+    /** Writes legal moves into the buffer and returns how many there are. */
+    public int generateLegal(int[] moves) {
+        int n = generatePseudoLegal(moves);
+        int legal = 0;
+        for (int i = 0; i < n; i++) {
+            int move = moves[i];
+            makeMove(move);
+            boolean ok = !isAttacked(kingSquare[sideToMove ^ 1], sideToMove);
+            unmakeMove();
+            if (ok) {
+                moves[legal++] = move;
+            }
+        }
+        return legal;
+    }
+
+    public boolean isCapture(int move) {
+        int to = Move.toSquare(move);
+        return squares[to] != 0 || (to == epSquare && type(squares[Move.fromSquare(move)]) == PAWN);
+    }
+}
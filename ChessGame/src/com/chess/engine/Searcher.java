@@ -0,0 +1,418 @@
+package com.chess.engine;
+
+import com.chess.book.OpeningBook;
+import com.chess.model.Move;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+import com.chess.tablebase.Tablebase;
+import java.util.Random;
+
+/**
+ * Iterative-deepening alpha-beta search with quiescence, a transposition table and
+ * a triangular principal-variation table. The opening book and endgame tablebase are
+ * consulted at the root before any search. {@link #stop()} may be called from any thread.
+ */
+public class Searcher {
+    public static final int MATE_SCORE = 30000;
+    public static final int MAX_DEPTH = 64;
+    private static final int INFINITY = 32000;
+    private static final int MATE_BOUND = MATE_SCORE - MAX_DEPTH;
+
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+
+    public enum Source { SEARCH, BOOK, TABLEBASE }
+
+    public interface Listener {
+        /**
+         * Called after each completed iteration; score is from the side to move's view.
+         * A book move carries no evaluation and is reported with a score of 0.
+         */
+        void onIteration(Source source, int depth, int score, int[] pv, int pvLength, long nodes);
+    }
+
+    private final Evaluator evaluator = new Evaluator();
+    private final Random random = new Random();
+    private final OpeningBook book;
+    private final Tablebase tablebase;
+
+    private final long[] ttKeys;
+    private final int[] ttMoves;
+    private final short[] ttScores;
+    private final byte[] ttDepths;
+    private final byte[] ttFlags;
+    private final int ttMask;
+
+    private final int[][] moveLists = new int[MAX_DEPTH + 1][256];
+    private final int[][] moveScores = new int[MAX_DEPTH + 1][256];
+    private final int[][] pvTable = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+    private final int[] pvLength = new int[MAX_DEPTH + 1];
+
+    private volatile boolean stopRequested;
+    private boolean stopped;
+    private long deadline;
+    private long nodes;
+    private Position position;
+
+    public Searcher(OpeningBook book, Tablebase tablebase) {
+        this(book, tablebase, 1 << 20);
+    }
+
+    public Searcher(OpeningBook book, Tablebase tablebase, int ttSizePowerOfTwo) {
+        this.book = book;
+        this.tablebase = tablebase;
+        int size = Integer.highestOneBit(Math.max(ttSizePowerOfTwo, 1024));
+        ttKeys = new long[size];
+        ttMoves = new int[size];
+        ttScores = new short[size];
+        ttDepths = new byte[size];
+        ttFlags = new byte[size];
+        ttMask = size - 1;
+    }
+
+    /** Asks a running search to return as soon as possible. Sticky until {@link #clearStop()}. */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    /** Plies to mate for a mate score (positive when the side to move mates). */
+    public static int matePlies(int score) {
+        return score > 0 ? MATE_SCORE - score : -(MATE_SCORE + score);
+    }
+
+    /**
+     * Searches until maxDepth, the time limit or {@link #stop()}. Returns the best move
+     * found, or {@link Move#NONE} if there are no legal moves.
+     */
+    public int search(Position root, int maxDepth, long timeLimitMs, Listener listener) {
+        stopped = stopRequested;
+        nodes = 0;
+        position = root;
+        deadline = System.currentTimeMillis() + timeLimitMs;
+
+        int[] single = new int[1];
+        if (book != null) {
+            int bookMove = pickBookMove(root);
+            if (bookMove != Move.NONE) {
+                if (listener != null) {
+                    single[0] = bookMove;
+                    listener.onIteration(Source.BOOK, 0, 0, single, 1, 0);
+                }
+                return bookMove;
+            }
+        }
+        if (tablebase != null) {
+            int tbMove = probeTablebaseRoot(root, single);
+            if (tbMove != Move.NONE) {
+                if (listener != null) {
+                    listener.onIteration(Source.TABLEBASE, 0, single[0], new int[] {tbMove}, 1, 0);
+                }
+                return tbMove;
+            }
+        }
+
+        int bestMove = Move.NONE;
+        maxDepth = Math.min(maxDepth, MAX_DEPTH - 1);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int score = negamax(depth, -INFINITY, INFINITY, 0);
+            if (stopped) {
+                break;
+            }
+            if (pvLength[0] > 0) {
+                bestMove = pvTable[0][0];
+            }
+            if (listener != null) {
+                listener.onIteration(Source.SEARCH, depth, score, pvTable[0], pvLength[0], nodes);
+            }
+            if (isMateScore(score) && matePlies(score) <= depth) {
+                break;
+            }
+        }
+        if (bestMove == Move.NONE && root.generateLegal(moveLists[0]) > 0) {
+            bestMove = moveLists[0][0];
+        }
+        return bestMove;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if ((++nodes & 2047) == 0 && (stopRequested || System.currentTimeMillis() > deadline)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (ply > 0 && position.halfmoveClock >= 100) {
+            return 0;
+        }
+        boolean inCheck = position.isInCheck();
+        if (inCheck && ply < MAX_DEPTH - 1) {
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_DEPTH - 1) {
+            return quiesce(alpha, beta, ply);
+        }
+
+        int slot = (int) position.key & ttMask;
+        int ttMove = Move.NONE;
+        if (ttKeys[slot] == position.key) {
+            ttMove = ttMoves[slot];
+            if (ply > 0 && ttDepths[slot] >= depth) {
+                int score = fromTable(ttScores[slot], ply);
+                int flag = ttFlags[slot];
+                if (flag == EXACT || (flag == LOWER && score >= beta) || (flag == UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] moves = moveLists[ply];
+        int count = position.generateLegal(moves);
+        if (count == 0) {
+            return inCheck ? -MATE_SCORE + ply : 0;
+        }
+        scoreMoves(moves, moveScores[ply], count, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(moves, moveScores[ply], i, count);
+            position.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int flag = best >= beta ? LOWER : best > originalAlpha ? EXACT : UPPER;
+        ttKeys[slot] = position.key;
+        ttMoves[slot] = bestMove;
+        ttScores[slot] = (short) toTable(best, ply);
+        ttDepths[slot] = (byte) depth;
+        ttFlags[slot] = (byte) flag;
+        return best;
+    }
+
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if ((++nodes & 2047) == 0 && (stopRequested || System.currentTimeMillis() > deadline)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        int standPat = evaluator.evaluate(position);
+        if (standPat >= beta || ply >= MAX_DEPTH - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        int[] moves = moveLists[ply];
+        int count = position.generateLegal(moves);
+        int captures = 0;
+        for (int i = 0; i < count; i++) {
+            if (position.isCapture(moves[i]) || Move.promotion(moves[i]) == PieceType.QUEEN) {
+                moves[captures++] = moves[i];
+            }
+        }
+        scoreMoves(moves, moveScores[ply], captures, Move.NONE);
+        for (int i = 0; i < captures; i++) {
+            int move = pickNext(moves, moveScores[ply], i, captures);
+            position.makeMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    private void scoreMoves(int[] moves, int[] scores, int count, int ttMove) {
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (move == ttMove) {
+                scores[i] = 1 << 20;
+                continue;
+            }
+            int score = 0;
+            int victim = position.squares[Move.toSquare(move)];
+            if (victim != 0) {
+                int attacker = position.squares[Move.fromSquare(move)];
+                score = 10000 + Evaluator.MG_VALUE[Position.type(victim)] * 10 - Evaluator.MG_VALUE[Position.type(attacker)];
+            } else if (position.isCapture(move)) {
+                score = 10000 + Evaluator.MG_VALUE[Position.PAWN] * 9;
+            }
+            PieceType promotion = Move.promotion(move);
+            if (promotion != null) {
+                score += Evaluator.MG_VALUE[promotion.ordinal()];
+            }
+            scores[i] = score;
+        }
+    }
+
+    private static int pickNext(int[] moves, int[] scores, int start, int count) {
+        int best = start;
+        for (int i = start + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[start];
+        moves[start] = move;
+        int score = scores[best];
+        scores[best] = scores[start];
+        scores[start] = score;
+        return move;
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+
+    /**
+     * Picks one of the book's moves at random in proportion to its weight, skipping any
+     * that are not legal here (a key collision or a corrupt book), or returns
+     * {@link Move#NONE} so the root is searched instead.
+     */
+    private int pickBookMove(Position root) {
+        int[] moves = new int[16];
+        int[] weights = new int[16];
+        int count = book.probe(root.key, moves, weights);
+        if (count == 0) {
+            return Move.NONE;
+        }
+        int[] legal = moveLists[0];
+        int legalCount = root.generateLegal(legal);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            if (weights[i] < 0 || !contains(legal, legalCount, moves[i])) {
+                weights[i] = 0;
+            }
+            total += weights[i];
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int probeTablebaseRoot(Position root, int[] scoreOut) {
+        if (root.castling != 0 || probeTablebase(root) == Tablebase.UNKNOWN) {
+            return Move.NONE;
+        }
+        int[] moves = new int[256];
+        int count = root.generateLegal(moves);
+        int bestMove = Move.NONE;
+        int bestScore = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            root.makeMove(moves[i]);
+            int child = probeTablebase(root);
+            root.unmakeMove();
+            if (child == Tablebase.UNKNOWN) {
+                return Move.NONE;
+            }
+            int score;
+            if (Tablebase.isDraw(child)) {
+                score = 0;
+            } else if (Tablebase.isLoss(child)) {
+                score = MATE_SCORE - (Tablebase.distanceToMate(child) + 1);
+            } else {
+                score = -MATE_SCORE + Tablebase.distanceToMate(child) + 1;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = moves[i];
+            }
+        }
+        scoreOut[0] = bestScore;
+        return bestMove;
+    }
+
+    private int probeTablebase(Position p) {
+        PieceType[] types = new PieceType[Tablebase.MAX_PIECES];
+        PieceColor[] colors = new PieceColor[Tablebase.MAX_PIECES];
+        int[] squares = new int[Tablebase.MAX_PIECES];
+        int count = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = p.squares[sq];
+            if (piece == 0) {
+                continue;
+            }
+            if (count == Tablebase.MAX_PIECES) {
+                return Tablebase.UNKNOWN;
+            }
+            types[count] = PieceType.values()[Position.type(piece)];
+            colors[count] = Position.color(piece) == Position.WHITE ? PieceColor.WHITE : PieceColor.BLACK;
+            squares[count] = sq;
+            count++;
+        }
+        PieceColor stm = p.sideToMove == Position.WHITE ? PieceColor.WHITE : PieceColor.BLACK;
+        return tablebase.probe(types, colors, squares, count, stm);
+    }
+}
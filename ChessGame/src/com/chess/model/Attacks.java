@@ -0,0 +1,230 @@
+package com.chess.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Attack sets as bitboards over squares row * 8 + col, so bit 0 is a8 and bit 63 is h1.
+ * Knight, king and pawn attacks are plain tables. Rook and bishop attacks use magic
+ * indexing: the blockers on a square's rays are multiplied by a per-square constant whose
+ * top bits index a table holding the attack set for that blocker pattern. The constants
+ * below came from {@link #main}, a seeded random search; only the tables are built when the
+ * class loads.
+ */
+public final class Attacks {
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final int[][] KNIGHT_STEPS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_STEPS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final long MAGIC_SEED = 0x5EEDC4E55L;
+
+    private static final long[] ROOK_MAGIC = {
+        0x0880004000801022L, 0x4440200440021000L, 0x088008D002200080L, 0x2500209000090004L,
+        0x1080040068008022L, 0x2200010842004410L, 0x1500008409000200L, 0x020000804029040AL,
+        0x4800800040008020L, 0x2082002200410082L, 0x0301001041082000L, 0xC041808008003000L,
+        0x00A4800400800800L, 0x0010800200800400L, 0x0184800100020080L, 0x0040800040802100L,
+        0x4000848004400060L, 0x8684444010002000L, 0x2006820010204200L, 0x0000090021001000L,
+        0x2009010008001004L, 0x900C008004020080L, 0x4108040001100288L, 0x5020220000804114L,
+        0x0080034240002000L, 0x03D0104040002000L, 0x4000100480200480L, 0x0040401200200A00L,
+        0x1032000600102008L, 0x0B820002801C0080L, 0x080A004200011488L, 0x0002908200140041L,
+        0x0080002000400040L, 0x10E0804000802003L, 0x0220100080802000L, 0x2204805004800801L,
+        0xC805004413000800L, 0x0050020080800400L, 0x0010800100800200L, 0x0004008502000864L,
+        0x0002008100420020L, 0x000150002008C000L, 0x090C410020090010L, 0x88422200400A0011L,
+        0x0008002040040400L, 0x0002001004020008L, 0x00008D2842040010L, 0x4204410080420004L,
+        0x0040800821004100L, 0x0200842000400480L, 0x0020620140B68200L, 0x80100008E1510100L,
+        0x0080800801040180L, 0x0803000804000300L, 0x0000080162300400L, 0x4002108041040200L,
+        0x8200102040800101L, 0x4602400016210481L, 0x08000A0040102082L, 0x0410210108100005L,
+        0x1011001008000423L, 0x11B1000400020801L, 0x0000012200881004L, 0x000008204401008AL
+    };
+    private static final long[] BISHOP_MAGIC = {
+        0x08040104010A0A00L, 0x20080800C4004040L, 0x211008B0A1010804L, 0x0108061840900088L,
+        0x0210882000442020L, 0x3009045241040400L, 0xC010A80802100046L, 0x02018A0802010400L,
+        0x080010111001204AL, 0x0080041024005080L, 0x8140418103010080L, 0x0040640428800614L,
+        0x0000411041302012L, 0x0022008820880490L, 0x402000450C10C080L, 0x1454020704925000L,
+        0x4044000988080800L, 0x02A0000404041044L, 0x05020030102A0320L, 0x020420180A0060A8L,
+        0x8882004C02110000L, 0x0083000200514404L, 0x002C040209046208L, 0x2285180044008409L,
+        0x2002081020481020L, 0x1004020004884820L, 0x02180A000C4A0600L, 0x0480802008020020L,
+        0x0481020004008400L, 0x0470030001806104L, 0x4304084404210408L, 0x0002890040844802L,
+        0x2201200800105020L, 0x8803A49001201200L, 0x0400222408480800L, 0x0004208020080200L,
+        0x0008020010040900L, 0x1002004100021008L, 0x0002108A00010800L, 0x3050810100A04410L,
+        0x0024100808230400L, 0x10010410AA004420L, 0x01000C0048002401L, 0x0081011414041800L,
+        0x0400812012000100L, 0x0040182804204840L, 0x0144100220420A00L, 0x0410020216204040L,
+        0x8006010420050020L, 0x48120280D8082001L, 0x8000428048280000L, 0x1000230042020081L,
+        0x8244A21002120340L, 0x0100081001820880L, 0x0421044102340000L, 0x0004114802008404L,
+        0x2080842110022010L, 0x0020007309082000L, 0x1010200052080400L, 0x4201009200460800L,
+        0x00084040E014A401L, 0x2101004011240121L, 0x0520404204840080L, 0x0A4C907009012380L
+    };
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = steps(sq, KNIGHT_STEPS);
+            KING[sq] = steps(sq, KING_STEPS);
+            PAWN[PieceColor.WHITE.ordinal()][sq] = steps(sq, new int[][] {{-1, -1}, {-1, 1}});
+            PAWN[PieceColor.BLACK.ordinal()][sq] = steps(sq, new int[][] {{1, -1}, {1, 1}});
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            ROOK_MASK[sq] = relevantBlockers(sq, ROOK_DIRECTIONS);
+            ROOK_SHIFT[sq] = 64 - Long.bitCount(ROOK_MASK[sq]);
+            ROOK_TABLE[sq] = fillTable(sq, ROOK_MASK[sq], ROOK_MAGIC[sq], ROOK_DIRECTIONS);
+            BISHOP_MASK[sq] = relevantBlockers(sq, BISHOP_DIRECTIONS);
+            BISHOP_SHIFT[sq] = 64 - Long.bitCount(BISHOP_MASK[sq]);
+            BISHOP_TABLE[sq] = fillTable(sq, BISHOP_MASK[sq], BISHOP_MAGIC[sq], BISHOP_DIRECTIONS);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    /** Squares a pawn of the given colour (ordinal) on sq captures on. */
+    public static long pawn(int color, int sq) {
+        return PAWN[color][sq];
+    }
+
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    public static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    private static long steps(int sq, int[][] deltas) {
+        long result = 0;
+        for (int[] d : deltas) {
+            int r = (sq >> 3) + d[0];
+            int c = (sq & 7) + d[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                result |= 1L << (r * 8 + c);
+            }
+        }
+        return result;
+    }
+
+    /** Walks each ray to the first blocker, which is included; the slow reference the tables are built from. */
+    private static long slide(int sq, long occupied, int[][] directions) {
+        long result = 0;
+        for (int[] d : directions) {
+            int r = (sq >> 3) + d[0];
+            int c = (sq & 7) + d[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long bit = 1L << (r * 8 + c);
+                result |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                r += d[0];
+                c += d[1];
+            }
+        }
+        return result;
+    }
+
+    /** Ray squares whose occupancy matters: the last square of each ray never blocks anything. */
+    private static long relevantBlockers(int sq, int[][] directions) {
+        long result = 0;
+        for (int[] d : directions) {
+            int r = (sq >> 3) + d[0];
+            int c = (sq & 7) + d[1];
+            while (r + d[0] >= 0 && r + d[0] < 8 && c + d[1] >= 0 && c + d[1] < 8) {
+                result |= 1L << (r * 8 + c);
+                r += d[0];
+                c += d[1];
+            }
+        }
+        return result;
+    }
+
+    private static long findMagic(int sq, long mask, int[][] directions, SplittableRandom random) {
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] blockers = new long[size];
+        long[] attacks = new long[size];
+        // Enumerate every subset of the mask with the carry-rippler trick
+        long subset = 0;
+        for (int i = 0; i < size; i++) {
+            blockers[i] = subset;
+            attacks[i] = slide(sq, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+        long[] used = new long[size];
+        int[] epoch = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            // Sparse candidates succeed far more often
+            long magic = random.nextLong() & random.nextLong() & random.nextLong();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            boolean ok = true;
+            for (int i = 0; i < size && ok; i++) {
+                int index = (int) ((blockers[i] * magic) >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    used[index] = attacks[i];
+                } else if (used[index] != attacks[i]) {
+                    ok = false;
+                }
+            }
+            if (ok) {
+                return magic;
+            }
+        }
+    }
+
+    private static long[] fillTable(int sq, long mask, long magic, int[][] directions) {
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        long subset = 0;
+        do {
+            int index = (int) ((subset * magic) >>> (64 - bits));
+            long attacks = slide(sq, subset, directions);
+            // Attack sets are never empty, so a filled slot holding another set is a bad magic
+            if (table[index] != 0 && table[index] != attacks) {
+                throw new IllegalStateException("Magic for square " + sq + " collides");
+            }
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+        return table;
+    }
+
+    /** Runs the magic search and prints the constants in the form used above. */
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(args.length > 0 ? Long.decode(args[0]) : MAGIC_SEED);
+        long[][] magics = new long[2][64];
+        for (int sq = 0; sq < 64; sq++) {
+            magics[0][sq] = findMagic(sq, relevantBlockers(sq, ROOK_DIRECTIONS), ROOK_DIRECTIONS, random);
+            magics[1][sq] = findMagic(sq, relevantBlockers(sq, BISHOP_DIRECTIONS), BISHOP_DIRECTIONS, random);
+        }
+        String[] names = {"ROOK_MAGIC", "BISHOP_MAGIC"};
+        for (int kind = 0; kind < 2; kind++) {
+            StringBuilder sb = new StringBuilder("    private static final long[] " + names[kind] + " = {\n");
+            for (int sq = 0; sq < 64; sq++) {
+                sb.append(sq % 4 == 0 ? "        " : " ").append(String.format("0x%016XL", magics[kind][sq]));
+                sb.append(sq < 63 ? "," : "").append(sq % 4 == 3 ? "\n" : "");
+            }
+            System.out.print(sb.append("    };\n"));
+        }
+    }
+}
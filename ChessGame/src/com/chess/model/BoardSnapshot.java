@@ -0,0 +1,103 @@
+package com.chess.model;
+
+import java.io.Serializable;
+
+/**
+ * Immutable state of a board at one moment. The pieces are read straight from the packed
+ * image of {@link ChessBoard#toPacked}, so a snapshot is a few hundred bytes, needs no
+ * locking to read and serializes compactly. Use {@link #toBoard} for a mutable copy.
+ */
+public final class BoardSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] packed;
+    private final PieceColor currentTurn;
+    private final int moveCount;
+    private final int castlingRights;
+    private final int enPassantTargetCol;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final boolean whiteInCheck;
+    private final boolean blackInCheck;
+    private final boolean gameOver;
+    private final PieceColor winner;
+    private final GameOverReason gameOverReason;
+    private final long zobristKey;
+
+    BoardSnapshot(ChessBoard board) {
+        packed = board.toPacked();
+        currentTurn = board.getCurrentTurn();
+        moveCount = board.getMoveCount();
+        castlingRights = board.getCastlingRights();
+        enPassantTargetCol = board.getEnPassantTargetCol();
+        halfmoveClock = board.getHalfmoveClock();
+        fullmoveNumber = board.getFullmoveNumber();
+        whiteInCheck = board.isInCheck(PieceColor.WHITE);
+        blackInCheck = board.isInCheck(PieceColor.BLACK);
+        gameOver = board.isGameOver();
+        winner = board.getWinner();
+        gameOverReason = board.getGameOverReason();
+        zobristKey = board.getZobristKey();
+    }
+
+    public ChessPiece getPiece(int row, int col) {
+        return ChessBoard.packedPiece(packed, row * 8 + col);
+    }
+
+    public PieceColor getCurrentTurn() {
+        return currentTurn;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantTargetCol() {
+        return enPassantTargetCol;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public boolean isInCheck(PieceColor color) {
+        return color == PieceColor.WHITE ? whiteInCheck : blackInCheck;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public PieceColor getWinner() {
+        return winner;
+    }
+
+    public GameOverReason getGameOverReason() {
+        return gameOverReason;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /** A new mutable board in this state, including its repetition history. */
+    public ChessBoard toBoard() {
+        return ChessBoard.fromPacked(packed);
+    }
+
+    public byte[] toPacked() {
+        return packed.clone();
+    }
+
+    public String toFen() {
+        return toBoard().toFen();
+    }
+}
@@ -1,14 +1,20 @@
 package com.chess.model;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class ChessBoard implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private ChessPiece[][] board;
+    // Bitboards over squares row * 8 + col, kept in step with the board array by put()
+    private long[] pieceBoards = new long[12];
+    private long[] colorBoards = new long[2];
     private PieceColor currentTurn;
     private boolean gameOver;
     private PieceColor winner;
+    private GameOverReason gameOverReason;
     private int moveCount;
     private boolean whiteInCheck;
     private boolean blackInCheck;
@@ -16,12 +22,23 @@ public class ChessBoard implements Serializable {
     private int enPassantTargetCol = -1;
     private PieceColor enPassantTargetColor = null;
     
-    private boolean whiteKingMoved = false;
-    private boolean whiteRookLeftMoved = false;
-    private boolean whiteRookRightMoved = false;
-    private boolean blackKingMoved = false;
-    private boolean blackRookLeftMoved = false;
-    private boolean blackRookRightMoved = false;
+    // Zobrist.WHITE_KINGSIDE etc.; a right is dropped once its king or rook leaves or is captured
+    private int castlingRights = Zobrist.WHITE_KINGSIDE | Zobrist.WHITE_QUEENSIDE |
+                                 Zobrist.BLACK_KINGSIDE | Zobrist.BLACK_QUEENSIDE;
+
+    private int halfmoveClock = 0;
+    private int fullmoveNumber = 1;
+
+    // Keys of positions since the last capture or pawn move; older positions cannot recur
+    private long[] positionHistory = new long[16];
+    private int historySize = 0;
+
+    public static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+    private static final int PACKED_HEADER_SIZE = 32 + 6 + 2 + 4 + 4 + 4;
+
+    private static volatile boolean loggingEnabled = true;
 
     public ChessBoard() {
         board = new ChessPiece[8][8];
@@ -31,8 +48,39 @@ public class ChessBoard implements Serializable {
         whiteInCheck = false;
         blackInCheck = false;
         initializeBoard();
+        recordPosition();
+    }
+
+    private ChessBoard(boolean empty) {
+        board = new ChessPiece[8][8];
+        currentTurn = PieceColor.WHITE;
     }
     
+    public ChessBoard copy() {
+        ChessBoard result = new ChessBoard(true);
+        // Pieces are shared immutable instances, so only the rank arrays are copied
+        for (int row = 0; row < 8; row++) {
+            result.board[row] = board[row].clone();
+        }
+        result.pieceBoards = pieceBoards.clone();
+        result.colorBoards = colorBoards.clone();
+        result.currentTurn = currentTurn;
+        result.gameOver = gameOver;
+        result.winner = winner;
+        result.moveCount = moveCount;
+        result.whiteInCheck = whiteInCheck;
+        result.blackInCheck = blackInCheck;
+        result.enPassantTargetCol = enPassantTargetCol;
+        result.enPassantTargetColor = enPassantTargetColor;
+        result.castlingRights = castlingRights;
+        result.halfmoveClock = halfmoveClock;
+        result.fullmoveNumber = fullmoveNumber;
+        result.gameOverReason = gameOverReason;
+        result.positionHistory = positionHistory.clone();
+        result.historySize = historySize;
+        return result;
+    }
+
     public int getMoveCount() {
         return moveCount;
     }
@@ -41,31 +89,41 @@ public class ChessBoard implements Serializable {
         return color == PieceColor.WHITE ? whiteInCheck : blackInCheck;
     }
 
+    public static void setLoggingEnabled(boolean enabled) {
+        loggingEnabled = enabled;
+    }
+
+    private static void log(String message) {
+        if (loggingEnabled) {
+            System.out.println(message);
+        }
+    }
+
     private void initializeBoard() {
-        board[0][0] = new ChessPiece(PieceType.ROOK, PieceColor.BLACK);
-        board[0][1] = new ChessPiece(PieceType.KNIGHT, PieceColor.BLACK);
-        board[0][2] = new ChessPiece(PieceType.BISHOP, PieceColor.BLACK);
-        board[0][3] = new ChessPiece(PieceType.QUEEN, PieceColor.BLACK);
-        board[0][4] = new ChessPiece(PieceType.KING, PieceColor.BLACK);
-        board[0][5] = new ChessPiece(PieceType.BISHOP, PieceColor.BLACK);
-        board[0][6] = new ChessPiece(PieceType.KNIGHT, PieceColor.BLACK);
-        board[0][7] = new ChessPiece(PieceType.ROOK, PieceColor.BLACK);
+        put(0, 0, ChessPiece.of(PieceType.ROOK, PieceColor.BLACK));
+        put(0, 1, ChessPiece.of(PieceType.KNIGHT, PieceColor.BLACK));
+        put(0, 2, ChessPiece.of(PieceType.BISHOP, PieceColor.BLACK));
+        put(0, 3, ChessPiece.of(PieceType.QUEEN, PieceColor.BLACK));
+        put(0, 4, ChessPiece.of(PieceType.KING, PieceColor.BLACK));
+        put(0, 5, ChessPiece.of(PieceType.BISHOP, PieceColor.BLACK));
+        put(0, 6, ChessPiece.of(PieceType.KNIGHT, PieceColor.BLACK));
+        put(0, 7, ChessPiece.of(PieceType.ROOK, PieceColor.BLACK));
         
         for (int i = 0; i < 8; i++) {
-            board[1][i] = new ChessPiece(PieceType.PAWN, PieceColor.BLACK);
+            put(1, i, ChessPiece.of(PieceType.PAWN, PieceColor.BLACK));
         }
 
-        board[7][0] = new ChessPiece(PieceType.ROOK, PieceColor.WHITE);
-        board[7][1] = new ChessPiece(PieceType.KNIGHT, PieceColor.WHITE);
-        board[7][2] = new ChessPiece(PieceType.BISHOP, PieceColor.WHITE);
-        board[7][3] = new ChessPiece(PieceType.QUEEN, PieceColor.WHITE);
-        board[7][4] = new ChessPiece(PieceType.KING, PieceColor.WHITE);
-        board[7][5] = new ChessPiece(PieceType.BISHOP, PieceColor.WHITE);
-        board[7][6] = new ChessPiece(PieceType.KNIGHT, PieceColor.WHITE);
-        board[7][7] = new ChessPiece(PieceType.ROOK, PieceColor.WHITE);
+        put(7, 0, ChessPiece.of(PieceType.ROOK, PieceColor.WHITE));
+        put(7, 1, ChessPiece.of(PieceType.KNIGHT, PieceColor.WHITE));
+        put(7, 2, ChessPiece.of(PieceType.BISHOP, PieceColor.WHITE));
+        put(7, 3, ChessPiece.of(PieceType.QUEEN, PieceColor.WHITE));
+        put(7, 4, ChessPiece.of(PieceType.KING, PieceColor.WHITE));
+        put(7, 5, ChessPiece.of(PieceType.BISHOP, PieceColor.WHITE));
+        put(7, 6, ChessPiece.of(PieceType.KNIGHT, PieceColor.WHITE));
+        put(7, 7, ChessPiece.of(PieceType.ROOK, PieceColor.WHITE));
         
         for (int i = 0; i < 8; i++) {
-            board[6][i] = new ChessPiece(PieceType.PAWN, PieceColor.WHITE);
+            put(6, i, ChessPiece.of(PieceType.PAWN, PieceColor.WHITE));
         }
     }
 
@@ -83,55 +141,46 @@ public class ChessBoard implements Serializable {
         
         enPassantTargetCol = -1;
         enPassantTargetColor = null;
+
+        if (piece.getType() == PieceType.PAWN || capturedPiece != null) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        if (piece.getColor() == PieceColor.BLACK) {
+            fullmoveNumber++;
+        }
         
         if (piece.getType() == PieceType.PAWN && fromCol != toCol && capturedPiece == null) {
             int capturedPawnRow = (piece.getColor() == PieceColor.WHITE) ? toRow + 1 : toRow - 1;
-            board[capturedPawnRow][toCol] = null;
-            System.out.println("[BOARD] En passant capture! Removed pawn at row " + capturedPawnRow);
+            put(capturedPawnRow, toCol, null);
+            log("[BOARD] En passant capture! Removed pawn at row " + capturedPawnRow);
         }
         
         if (piece.getType() == PieceType.KING && Math.abs(fromCol - toCol) == 2) {
             if (toCol == 6) {
                 ChessPiece rook = board[fromRow][7];
-                board[fromRow][5] = rook;
-                board[fromRow][7] = null;
-                rook.setMoved(true);
-                System.out.println("[BOARD] Kingside castling performed");
+                put(fromRow, 5, rook);
+                put(fromRow, 7, null);
+                log("[BOARD] Kingside castling performed");
             } else if (toCol == 2) {
                 ChessPiece rook = board[fromRow][0];
-                board[fromRow][3] = rook;
-                board[fromRow][0] = null;
-                rook.setMoved(true);
-                System.out.println("[BOARD] Queenside castling performed");
+                put(fromRow, 3, rook);
+                put(fromRow, 0, null);
+                log("[BOARD] Queenside castling performed");
             }
         }
         
-        if (piece.getType() == PieceType.KING) {
-            if (piece.getColor() == PieceColor.WHITE) {
-                whiteKingMoved = true;
-            } else {
-                blackKingMoved = true;
-            }
-        }
-        if (piece.getType() == PieceType.ROOK) {
-            if (piece.getColor() == PieceColor.WHITE) {
-                if (fromCol == 0) whiteRookLeftMoved = true;
-                if (fromCol == 7) whiteRookRightMoved = true;
-            } else {
-                if (fromCol == 0) blackRookLeftMoved = true;
-                if (fromCol == 7) blackRookRightMoved = true;
-            }
-        }
+        castlingRights &= ~(castlingRightsAt(fromRow, fromCol) | castlingRightsAt(toRow, toCol));
 
-        board[toRow][toCol] = piece;
-        board[fromRow][fromCol] = null;
-        piece.setMoved(true);
+        put(toRow, toCol, piece);
+        put(fromRow, fromCol, null);
         moveCount++;
 
         if (piece.getType() == PieceType.PAWN && Math.abs(fromRow - toRow) == 2) {
             enPassantTargetCol = fromCol;
             enPassantTargetColor = piece.getColor();
-            System.out.println("[BOARD] En passant opportunity created for " + piece.getColor() + 
+            log("[BOARD] En passant opportunity created for " + piece.getColor() + 
                              " pawn at column " + enPassantTargetCol);
         }
 
@@ -140,9 +189,8 @@ public class ChessBoard implements Serializable {
                 (piece.getColor() == PieceColor.BLACK && toRow == 7)) {
                 
                 PieceType newType = (promotionType != null) ? promotionType : PieceType.QUEEN;
-                board[toRow][toCol] = new ChessPiece(newType, piece.getColor());
-                board[toRow][toCol].setMoved(true);
-                System.out.println("[BOARD] Pawn promoted to " + newType + "!");
+                put(toRow, toCol, ChessPiece.of(newType, piece.getColor()));
+                log("[BOARD] Pawn promoted to " + newType + "!");
             }
         }
 
@@ -152,14 +200,112 @@ public class ChessBoard implements Serializable {
         whiteInCheck = isKingInCheck(PieceColor.WHITE);
         blackInCheck = isKingInCheck(PieceColor.BLACK);
         
+        if (halfmoveClock == 0) {
+            historySize = 0;
+        }
+        int repetitions = recordPosition();
+
         if (isInCheck(currentTurn) && isCheckmate(currentTurn)) {
             gameOver = true;
             winner = (currentTurn == PieceColor.WHITE) ? PieceColor.BLACK : PieceColor.WHITE;
+            gameOverReason = GameOverReason.CHECKMATE;
+        } else if (!isInCheck(currentTurn) && !hasLegalMove(currentTurn)) {
+            endInDraw(GameOverReason.STALEMATE);
+        } else if (isInsufficientMaterial()) {
+            endInDraw(GameOverReason.INSUFFICIENT_MATERIAL);
+        } else if (repetitions >= 3) {
+            endInDraw(GameOverReason.THREEFOLD_REPETITION);
+        } else if (halfmoveClock >= 100) {
+            endInDraw(GameOverReason.FIFTY_MOVE_RULE);
         }
 
         return true;
     }
 
+    private void endInDraw(GameOverReason reason) {
+        gameOver = true;
+        winner = null;
+        gameOverReason = reason;
+        log("[BOARD] Draw by " + reason);
+    }
+
+    /** Ends the game for a reason outside the rules of play, such as a player leaving. */
+    public void endGame(PieceColor winner, GameOverReason reason) {
+        gameOver = true;
+        this.winner = winner;
+        gameOverReason = reason;
+    }
+
+    /** Appends the current position to the history and returns how often it has occurred. */
+    private int recordPosition() {
+        long key = getZobristKey();
+        if (historySize == positionHistory.length) {
+            positionHistory = Arrays.copyOf(positionHistory, historySize * 2);
+        }
+        positionHistory[historySize++] = key;
+        int count = 0;
+        // Same side to move only: step back two plies at a time
+        for (int i = historySize - 1; i >= 0; i -= 2) {
+            if (positionHistory[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasLegalMove(PieceColor color) {
+        for (long own = colorBoards[color.ordinal()]; own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            ChessPiece piece = board[from / 8][from % 8];
+            long targets = candidateTargets(from, piece);
+            // The candidates leave out en passant, the one move they miss
+            if (piece.getType() == PieceType.PAWN && enPassantTargetCol != -1 &&
+                Math.abs(from % 8 - enPassantTargetCol) == 1) {
+                targets |= 1L << ((from / 8 + (color == PieceColor.WHITE ? -1 : 1)) * 8 + enPassantTargetCol);
+            }
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (isValidMove(from / 8, from % 8, to / 8, to % 8)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isInsufficientMaterial() {
+        int minors = 0;
+        int knights = 0;
+        int lightBishops = 0;
+        int darkBishops = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = board[row][col];
+                if (piece == null) {
+                    continue;
+                }
+                switch (piece.getType()) {
+                    case PAWN:
+                    case ROOK:
+                    case QUEEN:
+                        return false;
+                    case KNIGHT:
+                        knights++;
+                        minors++;
+                        break;
+                    case BISHOP:
+                        if ((row + col) % 2 == 0) lightBishops++; else darkBishops++;
+                        minors++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        // A lone minor piece, or bishops that all stand on one colour, can never mate
+        return minors <= 1 || (knights == 0 && (lightBishops == 0 || darkBishops == 0));
+    }
+
     public boolean isValidMove(int fromRow, int fromCol, int toRow, int toCol) {
         if (fromRow < 0 || fromRow > 7 || fromCol < 0 || fromCol > 7 ||
             toRow < 0 || toRow > 7 || toCol < 0 || toCol > 7) {
@@ -176,31 +322,35 @@ public class ChessBoard implements Serializable {
             return false;
         }
 
-        if (isInCheck(currentTurn)) {
-            if (!wouldMoveEscapeCheck(fromRow, fromCol, toRow, toCol, currentTurn)) {
-                return false;
-            }
-        } else {
-            if (!isMoveSafeForKing(fromRow, fromCol, toRow, toCol, currentTurn)) {
-                return false;
-            }
-        }
-
+        boolean reachable;
         switch (piece.getType()) {
             case PAWN:
-                return isValidPawnMove(fromRow, fromCol, toRow, toCol);
+                reachable = isValidPawnMove(fromRow, fromCol, toRow, toCol);
+                break;
             case ROOK:
-                return isValidRookMove(fromRow, fromCol, toRow, toCol);
+                reachable = isValidRookMove(fromRow, fromCol, toRow, toCol);
+                break;
             case KNIGHT:
-                return isValidKnightMove(fromRow, fromCol, toRow, toCol);
+                reachable = isValidKnightMove(fromRow, fromCol, toRow, toCol);
+                break;
             case BISHOP:
-                return isValidBishopMove(fromRow, fromCol, toRow, toCol);
+                reachable = isValidBishopMove(fromRow, fromCol, toRow, toCol);
+                break;
             case QUEEN:
-                return isValidQueenMove(fromRow, fromCol, toRow, toCol);
-            case KING:
-                return isValidKingMove(fromRow, fromCol, toRow, toCol);
+                reachable = isValidQueenMove(fromRow, fromCol, toRow, toCol);
+                break;
+            default:
+                reachable = isValidKingMove(fromRow, fromCol, toRow, toCol);
+                break;
         }
-        return false;
+        // Geometry is a few table lookups; only then try the move for king safety
+        if (!reachable) {
+            return false;
+        }
+        if (isInCheck(currentTurn)) {
+            return wouldMoveEscapeCheck(fromRow, fromCol, toRow, toCol, currentTurn);
+        }
+        return isMoveSafeForKing(fromRow, fromCol, toRow, toCol, currentTurn);
     }
     
     private boolean isMoveSafeForKing(int fromRow, int fromCol, int toRow, int toCol, PieceColor color) {
@@ -210,21 +360,23 @@ public class ChessBoard implements Serializable {
         ChessPiece enPassantCaptured = null;
         if (movingPiece.getType() == PieceType.PAWN && fromCol != toCol && capturedPiece == null) {
             int capturedPawnRow = (movingPiece.getColor() == PieceColor.WHITE) ? toRow + 1 : toRow - 1;
-            enPassantCaptured = board[capturedPawnRow][toCol];
-            board[capturedPawnRow][toCol] = null;
+            if (capturedPawnRow >= 0 && capturedPawnRow < 8) {
+                enPassantCaptured = board[capturedPawnRow][toCol];
+                put(capturedPawnRow, toCol, null);
+            }
         }
         
-        board[toRow][toCol] = movingPiece;
-        board[fromRow][fromCol] = null;
+        put(toRow, toCol, movingPiece);
+        put(fromRow, fromCol, null);
         
         boolean kingIsSafe = !isKingInCheck(color);
         
-        board[fromRow][fromCol] = movingPiece;
-        board[toRow][toCol] = capturedPiece;
+        put(fromRow, fromCol, movingPiece);
+        put(toRow, toCol, capturedPiece);
         
         if (enPassantCaptured != null) {
             int capturedPawnRow = (movingPiece.getColor() == PieceColor.WHITE) ? toRow + 1 : toRow - 1;
-            board[capturedPawnRow][toCol] = enPassantCaptured;
+            put(capturedPawnRow, toCol, enPassantCaptured);
         }
         
         return kingIsSafe;
@@ -238,7 +390,7 @@ public class ChessBoard implements Serializable {
             if (toRow == fromRow + direction) {
                 return true;
             }
-            if (!pawn.hasMoved() && toRow == fromRow + 2 * direction && 
+            if (fromRow == pawnStartRow(pawn.getColor()) && toRow == fromRow + 2 * direction && 
                 board[fromRow + direction][fromCol] == null) {
                 return true;
             }
@@ -262,39 +414,27 @@ public class ChessBoard implements Serializable {
     }
 
     private boolean isValidRookMove(int fromRow, int fromCol, int toRow, int toCol) {
-        if (fromRow != toRow && fromCol != toCol) {
-            return false;
-        }
-        return isPathClear(fromRow, fromCol, toRow, toCol);
+        return (Attacks.rook(fromRow * 8 + fromCol, occupied()) & 1L << (toRow * 8 + toCol)) != 0;
     }
 
     private boolean isValidKnightMove(int fromRow, int fromCol, int toRow, int toCol) {
-        int rowDiff = Math.abs(fromRow - toRow);
-        int colDiff = Math.abs(fromCol - toCol);
-        return (rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2);
+        return (Attacks.knight(fromRow * 8 + fromCol) & 1L << (toRow * 8 + toCol)) != 0;
     }
 
     private boolean isValidBishopMove(int fromRow, int fromCol, int toRow, int toCol) {
-        if (Math.abs(fromRow - toRow) != Math.abs(fromCol - toCol)) {
-            return false;
-        }
-        return isPathClear(fromRow, fromCol, toRow, toCol);
+        return (Attacks.bishop(fromRow * 8 + fromCol, occupied()) & 1L << (toRow * 8 + toCol)) != 0;
     }
 
     private boolean isValidQueenMove(int fromRow, int fromCol, int toRow, int toCol) {
-        return isValidRookMove(fromRow, fromCol, toRow, toCol) || 
-               isValidBishopMove(fromRow, fromCol, toRow, toCol);
+        return (Attacks.queen(fromRow * 8 + fromCol, occupied()) & 1L << (toRow * 8 + toCol)) != 0;
     }
 
     private boolean isValidKingMove(int fromRow, int fromCol, int toRow, int toCol) {
-        int rowDiff = Math.abs(fromRow - toRow);
-        int colDiff = Math.abs(fromCol - toCol);
-        
-        if (rowDiff <= 1 && colDiff <= 1) {
+        if ((Attacks.king(fromRow * 8 + fromCol) & 1L << (toRow * 8 + toCol)) != 0) {
             return true;
         }
         
-        if (rowDiff == 0 && colDiff == 2 && !board[fromRow][fromCol].hasMoved()) {
+        if (fromRow == toRow && Math.abs(fromCol - toCol) == 2) {
             return canCastle(fromRow, fromCol, toRow, toCol);
         }
         
@@ -303,8 +443,11 @@ public class ChessBoard implements Serializable {
     
     private boolean canCastle(int fromRow, int fromCol, int toRow, int toCol) {
         ChessPiece king = board[fromRow][fromCol];
+        boolean isWhite = king.getColor() == PieceColor.WHITE;
         
-        if (king.hasMoved()) {
+        // A right implies its king and rook are still on their home squares
+        if (fromRow != (isWhite ? 7 : 0) || fromCol != 4 ||
+            (castlingRights & castlingRightsAt(fromRow, toCol == 6 ? 7 : 0)) == 0) {
             return false;
         }
         
@@ -312,14 +455,9 @@ public class ChessBoard implements Serializable {
             return false;
         }
         
-        boolean isWhite = king.getColor() == PieceColor.WHITE;
-        
         if (toCol == 6) {
-            if (isWhite && whiteRookRightMoved) return false;
-            if (!isWhite && blackRookRightMoved) return false;
-            
             ChessPiece rook = board[fromRow][7];
-            if (rook == null || rook.getType() != PieceType.ROOK || rook.hasMoved()) {
+            if (rook == null || rook.getType() != PieceType.ROOK) {
                 return false;
             }
             
@@ -336,11 +474,8 @@ public class ChessBoard implements Serializable {
         }
         
         if (toCol == 2) {
-            if (isWhite && whiteRookLeftMoved) return false;
-            if (!isWhite && blackRookLeftMoved) return false;
-            
             ChessPiece rook = board[fromRow][0];
-            if (rook == null || rook.getType() != PieceType.ROOK || rook.hasMoved()) {
+            if (rook == null || rook.getType() != PieceType.ROOK) {
                 return false;
             }
             
@@ -361,42 +496,19 @@ public class ChessBoard implements Serializable {
     }
     
     private boolean wouldSquareBeThreatened(int row, int col, PieceColor kingColor) {
-        PieceColor opponentColor = (kingColor == PieceColor.WHITE) ? 
-                                    PieceColor.BLACK : PieceColor.WHITE;
-        
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                ChessPiece piece = board[r][c];
-                if (piece != null && piece.getColor() == opponentColor) {
-                    PieceColor savedTurn = currentTurn;
-                    currentTurn = opponentColor;
-                    
-                    if (isValidMoveIgnoringCheck(r, c, row, col)) {
-                        currentTurn = savedTurn;
-                        return true;
-                    }
-                    
-                    currentTurn = savedTurn;
-                }
-            }
-        }
-        return false;
+        return isSquareAttacked(row * 8 + col, kingColor == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
     }
 
-    private boolean isPathClear(int fromRow, int fromCol, int toRow, int toCol) {
-        int rowDir = Integer.compare(toRow, fromRow);
-        int colDir = Integer.compare(toCol, fromCol);
-        int row = fromRow + rowDir;
-        int col = fromCol + colDir;
-
-        while (row != toRow || col != toCol) {
-            if (board[row][col] != null) {
-                return false;
-            }
-            row += rowDir;
-            col += colDir;
-        }
-        return true;
+    /** Whether a piece of the given colour attacks the square, whatever stands on it. */
+    private boolean isSquareAttacked(int square, PieceColor by) {
+        long occupied = occupied();
+        long queens = pieces(PieceType.QUEEN, by);
+        PieceColor victim = by == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        return (Attacks.knight(square) & pieces(PieceType.KNIGHT, by)) != 0 ||
+               (Attacks.king(square) & pieces(PieceType.KING, by)) != 0 ||
+               (Attacks.pawn(victim.ordinal(), square) & pieces(PieceType.PAWN, by)) != 0 ||
+               (Attacks.rook(square, occupied) & (pieces(PieceType.ROOK, by) | queens)) != 0 ||
+               (Attacks.bishop(square, occupied) & (pieces(PieceType.BISHOP, by) | queens)) != 0;
     }
 
     private boolean isCheckmate(PieceColor color) {
@@ -404,17 +516,13 @@ public class ChessBoard implements Serializable {
             return false;
         }
         
-        for (int fromRow = 0; fromRow < 8; fromRow++) {
-            for (int fromCol = 0; fromCol < 8; fromCol++) {
-                ChessPiece piece = board[fromRow][fromCol];
-                if (piece != null && piece.getColor() == color) {
-                    for (int toRow = 0; toRow < 8; toRow++) {
-                        for (int toCol = 0; toCol < 8; toCol++) {
-                            if (wouldMoveEscapeCheck(fromRow, fromCol, toRow, toCol, color)) {
-                                return false;
-                            }
-                        }
-                    }
+        for (long own = colorBoards[color.ordinal()]; own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            ChessPiece piece = board[from / 8][from % 8];
+            for (long targets = candidateTargets(from, piece); targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (wouldMoveEscapeCheck(from / 8, from % 8, to / 8, to % 8, color)) {
+                    return false;
                 }
             }
         }
@@ -438,21 +546,21 @@ public class ChessBoard implements Serializable {
             int capturedPawnRow = (movingPiece.getColor() == PieceColor.WHITE) ? toRow + 1 : toRow - 1;
             if (capturedPawnRow >= 0 && capturedPawnRow < 8) {
                 enPassantCaptured = board[capturedPawnRow][toCol];
-                board[capturedPawnRow][toCol] = null;
+                put(capturedPawnRow, toCol, null);
             }
         }
         
-        board[toRow][toCol] = movingPiece;
-        board[fromRow][fromCol] = null;
+        put(toRow, toCol, movingPiece);
+        put(fromRow, fromCol, null);
         
         boolean stillInCheck = isKingInCheck(color);
         
-        board[fromRow][fromCol] = movingPiece;
-        board[toRow][toCol] = capturedPiece;
+        put(fromRow, fromCol, movingPiece);
+        put(toRow, toCol, capturedPiece);
         
         if (enPassantCaptured != null) {
             int capturedPawnRow = (movingPiece.getColor() == PieceColor.WHITE) ? toRow + 1 : toRow - 1;
-            board[capturedPawnRow][toCol] = enPassantCaptured;
+            put(capturedPawnRow, toCol, enPassantCaptured);
         }
         
         currentTurn = savedTurn;
@@ -461,35 +569,12 @@ public class ChessBoard implements Serializable {
     }
     
     private boolean isKingInCheck(PieceColor kingColor) {
-        int[] kingPos = findKing(kingColor);
-        if (kingPos == null) {
+        long king = pieces(PieceType.KING, kingColor);
+        if (king == 0) {
             return false;
         }
-        
-        int kingRow = kingPos[0];
-        int kingCol = kingPos[1];
-        
-        PieceColor opponentColor = (kingColor == PieceColor.WHITE) ? 
-                                    PieceColor.BLACK : PieceColor.WHITE;
-        
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                ChessPiece piece = board[row][col];
-                if (piece != null && piece.getColor() == opponentColor) {
-                    PieceColor savedTurn = currentTurn;
-                    currentTurn = opponentColor;
-                    
-                    if (isValidMoveIgnoringCheck(row, col, kingRow, kingCol)) {
-                        currentTurn = savedTurn;
-                        return true;
-                    }
-                    
-                    currentTurn = savedTurn;
-                }
-            }
-        }
-        
-        return false;
+        return isSquareAttacked(Long.numberOfTrailingZeros(king),
+                                kingColor == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
     }
     
     private boolean isValidMoveIgnoringCheck(int fromRow, int fromCol, int toRow, int toCol) {
@@ -502,49 +587,420 @@ public class ChessBoard implements Serializable {
         if (piece == null) {
             return false;
         }
+        return (candidateTargets(fromRow * 8 + fromCol, piece) & 1L << (toRow * 8 + toCol)) != 0;
+    }
 
-        ChessPiece target = board[toRow][toCol];
-        if (target != null && target.getColor() == piece.getColor()) {
-            return false;
-        }
-        
+    /**
+     * Squares the piece on a square could move to if its own king's safety did not matter.
+     * En passant and castling are not included.
+     */
+    private long candidateTargets(int square, ChessPiece piece) {
+        PieceColor color = piece.getColor();
+        long own = colorBoards[color.ordinal()];
+        long occupied = occupied();
         switch (piece.getType()) {
             case PAWN:
-                int direction = (piece.getColor() == PieceColor.WHITE) ? -1 : 1;
-                if (fromCol == toCol && target == null) {
-                    if (toRow == fromRow + direction) return true;
-                    if (!piece.hasMoved() && toRow == fromRow + 2 * direction && 
-                        board[fromRow + direction][fromCol] == null) return true;
-                }
-                if (Math.abs(fromCol - toCol) == 1 && toRow == fromRow + direction && target != null) {
-                    return true;
+                int forward = color == PieceColor.WHITE ? -8 : 8;
+                long targets = Attacks.pawn(color.ordinal(), square) & occupied & ~own;
+                int one = square + forward;
+                if ((occupied & 1L << one) == 0) {
+                    targets |= 1L << one;
+                    if (square / 8 == pawnStartRow(color) && (occupied & 1L << (one + forward)) == 0) {
+                        targets |= 1L << (one + forward);
+                    }
                 }
-                return false;
+                return targets;
             case ROOK:
-                return isValidRookMove(fromRow, fromCol, toRow, toCol);
+                return Attacks.rook(square, occupied) & ~own;
             case KNIGHT:
-                return isValidKnightMove(fromRow, fromCol, toRow, toCol);
+                return Attacks.knight(square) & ~own;
             case BISHOP:
-                return isValidBishopMove(fromRow, fromCol, toRow, toCol);
+                return Attacks.bishop(square, occupied) & ~own;
             case QUEEN:
-                return isValidQueenMove(fromRow, fromCol, toRow, toCol);
-            case KING:
-                return Math.abs(fromRow - toRow) <= 1 && Math.abs(fromCol - toCol) <= 1;
+                return Attacks.queen(square, occupied) & ~own;
+            default:
+                return Attacks.king(square) & ~own;
         }
-        return false;
     }
 
-    private int[] findKing(PieceColor color) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPiece piece = board[i][j];
-                if (piece != null && piece.getType() == PieceType.KING && 
-                    piece.getColor() == color) {
-                    return new int[]{i, j};
+    /** Sets a square, keeping the bitboards in step with the board array. */
+    private void put(int row, int col, ChessPiece piece) {
+        long bit = 1L << (row * 8 + col);
+        ChessPiece old = board[row][col];
+        if (old != null) {
+            pieceBoards[Zobrist.pieceIndex(old.getType(), old.getColor())] &= ~bit;
+            colorBoards[old.getColor().ordinal()] &= ~bit;
+        }
+        if (piece != null) {
+            pieceBoards[Zobrist.pieceIndex(piece.getType(), piece.getColor())] |= bit;
+            colorBoards[piece.getColor().ordinal()] |= bit;
+        }
+        board[row][col] = piece;
+    }
+
+    private long pieces(PieceType type, PieceColor color) {
+        return pieceBoards[Zobrist.pieceIndex(type, color)];
+    }
+
+    private long occupied() {
+        return colorBoards[0] | colorBoards[1];
+    }
+
+    /**
+     * Builds a board from Forsyth-Edwards Notation. Castling rights whose king or rook is
+     * off its home square are dropped; pawns may double-push from their starting rank.
+     */
+    public static ChessBoard fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+        }
+        ChessBoard result = new ChessBoard(true);
+
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN needs 8 ranks: " + fields[0]);
+        }
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (int row = 0; row < 8; row++) {
+            int col = 0;
+            for (char c : ranks[row].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                PieceType type = pieceTypeOf(c);
+                if (type == null || col > 7) {
+                    throw new IllegalArgumentException("Bad rank in FEN: " + ranks[row]);
+                }
+                PieceColor color = Character.isUpperCase(c) ? PieceColor.WHITE : PieceColor.BLACK;
+                ChessPiece piece = ChessPiece.of(type, color);
+                if (type == PieceType.PAWN && (row == 0 || row == 7)) {
+                    throw new IllegalArgumentException("Pawn on back rank: " + ranks[row]);
+                }
+                if (type == PieceType.KING) {
+                    if (color == PieceColor.WHITE) whiteKings++; else blackKings++;
+                }
+                result.put(row, col++, piece);
+            }
+            if (col != 8) {
+                throw new IllegalArgumentException("Bad rank in FEN: " + ranks[row]);
+            }
+        }
+        if (whiteKings != 1 || blackKings != 1) {
+            throw new IllegalArgumentException("FEN needs exactly one king per side: " + fields[0]);
+        }
+
+        if (fields[1].equals("w")) {
+            result.currentTurn = PieceColor.WHITE;
+        } else if (fields[1].equals("b")) {
+            result.currentTurn = PieceColor.BLACK;
+        } else {
+            throw new IllegalArgumentException("Bad side to move in FEN: " + fields[1]);
+        }
+
+        String castling = fields[2];
+        if (!castling.equals("-") && !castling.matches("K?Q?k?q?")) {
+            throw new IllegalArgumentException("Bad castling field in FEN: " + castling);
+        }
+        int rights = 0;
+        if (castling.indexOf('K') >= 0) rights |= Zobrist.WHITE_KINGSIDE;
+        if (castling.indexOf('Q') >= 0) rights |= Zobrist.WHITE_QUEENSIDE;
+        if (castling.indexOf('k') >= 0) rights |= Zobrist.BLACK_KINGSIDE;
+        if (castling.indexOf('q') >= 0) rights |= Zobrist.BLACK_QUEENSIDE;
+        result.castlingRights = result.claimCastling(rights);
+
+        if (!fields[3].equals("-")) {
+            // The target square is behind a pawn of the side that just moved
+            PieceColor pushed = result.currentTurn == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+            String square = fields[3];
+            int col = square.length() == 2 ? square.charAt(0) - 'a' : -1;
+            int row = square.length() == 2 ? '8' - square.charAt(1) : -1;
+            int expectedRow = pushed == PieceColor.WHITE ? 5 : 2;
+            if (col < 0 || col > 7 || row != expectedRow) {
+                throw new IllegalArgumentException("Bad en passant square in FEN: " + square);
+            }
+            int pawnRow = pushed == PieceColor.WHITE ? 4 : 3;
+            ChessPiece pawn = result.board[pawnRow][col];
+            if (pawn != null && pawn.getType() == PieceType.PAWN && pawn.getColor() == pushed) {
+                result.enPassantTargetCol = col;
+                result.enPassantTargetColor = pushed;
+            }
+        }
+
+        try {
+            result.halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            result.fullmoveNumber = fields.length > 5 ? Math.max(1, Integer.parseInt(fields[5])) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad move counters in FEN: " + fen);
+        }
+        result.moveCount = (result.fullmoveNumber - 1) * 2 + (result.currentTurn == PieceColor.BLACK ? 1 : 0);
+
+        PieceColor opponent = result.currentTurn == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        if (result.isKingInCheck(opponent)) {
+            throw new IllegalArgumentException("Side not to move is in check: " + fen);
+        }
+        result.whiteInCheck = result.isKingInCheck(PieceColor.WHITE);
+        result.blackInCheck = result.isKingInCheck(PieceColor.BLACK);
+        result.recordPosition();
+        if (result.isInCheck(result.currentTurn) && result.isCheckmate(result.currentTurn)) {
+            result.gameOver = true;
+            result.winner = opponent;
+            result.gameOverReason = GameOverReason.CHECKMATE;
+        } else if (!result.isInCheck(result.currentTurn) && !result.hasLegalMove(result.currentTurn)) {
+            result.endInDraw(GameOverReason.STALEMATE);
+        } else if (result.isInsufficientMaterial()) {
+            result.endInDraw(GameOverReason.INSUFFICIENT_MATERIAL);
+        }
+        return result;
+    }
+
+    /** The subset of the given castling rights whose king and rook stand on their home squares. */
+    private int claimCastling(int rights) {
+        int result = 0;
+        if (hasPiece(7, 4, PieceType.KING, PieceColor.WHITE)) {
+            if (hasPiece(7, 7, PieceType.ROOK, PieceColor.WHITE)) result |= rights & Zobrist.WHITE_KINGSIDE;
+            if (hasPiece(7, 0, PieceType.ROOK, PieceColor.WHITE)) result |= rights & Zobrist.WHITE_QUEENSIDE;
+        }
+        if (hasPiece(0, 4, PieceType.KING, PieceColor.BLACK)) {
+            if (hasPiece(0, 7, PieceType.ROOK, PieceColor.BLACK)) result |= rights & Zobrist.BLACK_KINGSIDE;
+            if (hasPiece(0, 0, PieceType.ROOK, PieceColor.BLACK)) result |= rights & Zobrist.BLACK_QUEENSIDE;
+        }
+        return result;
+    }
+
+    private boolean hasPiece(int row, int col, PieceType type, PieceColor color) {
+        ChessPiece piece = board[row][col];
+        return piece != null && piece.getType() == type && piece.getColor() == color;
+    }
+
+    /** Castling rights that depend on the piece standing on the square: a home king or rook. */
+    private static int castlingRightsAt(int row, int col) {
+        if (row != 0 && row != 7) {
+            return 0;
+        }
+        int kingside = row == 7 ? Zobrist.WHITE_KINGSIDE : Zobrist.BLACK_KINGSIDE;
+        int queenside = row == 7 ? Zobrist.WHITE_QUEENSIDE : Zobrist.BLACK_QUEENSIDE;
+        switch (col) {
+            case 0: return queenside;
+            case 4: return kingside | queenside;
+            case 7: return kingside;
+            default: return 0;
+        }
+    }
+
+    private static int pawnStartRow(PieceColor color) {
+        return color == PieceColor.WHITE ? 6 : 1;
+    }
+
+    private static PieceType pieceTypeOf(char c) {
+        switch (Character.toLowerCase(c)) {
+            case 'p': return PieceType.PAWN;
+            case 'r': return PieceType.ROOK;
+            case 'n': return PieceType.KNIGHT;
+            case 'b': return PieceType.BISHOP;
+            case 'q': return PieceType.QUEEN;
+            case 'k': return PieceType.KING;
+            default: return null;
+        }
+    }
+
+    private static char fenLetter(ChessPiece piece) {
+        char c;
+        switch (piece.getType()) {
+            case PAWN: c = 'p'; break;
+            case ROOK: c = 'r'; break;
+            case KNIGHT: c = 'n'; break;
+            case BISHOP: c = 'b'; break;
+            case QUEEN: c = 'q'; break;
+            default: c = 'k'; break;
+        }
+        return piece.getColor() == PieceColor.WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = board[row][col];
+                if (piece == null) {
+                    empty++;
+                    continue;
                 }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                sb.append(fenLetter(piece));
+            }
+            if (empty > 0) {
+                sb.append(empty);
             }
+            if (row < 7) {
+                sb.append('/');
+            }
+        }
+        sb.append(currentTurn == PieceColor.WHITE ? " w " : " b ");
+
+        int rights = getCastlingRights();
+        if (rights == 0) {
+            sb.append('-');
+        } else {
+            if ((rights & Zobrist.WHITE_KINGSIDE) != 0) sb.append('K');
+            if ((rights & Zobrist.WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if ((rights & Zobrist.BLACK_KINGSIDE) != 0) sb.append('k');
+            if ((rights & Zobrist.BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
+
+        if (enPassantTargetCol == -1) {
+            sb.append(" -");
+        } else {
+            sb.append(' ').append((char) ('a' + enPassantTargetCol));
+            sb.append(enPassantTargetColor == PieceColor.WHITE ? '3' : '6');
+        }
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    /**
+     * Packs the whole game state, including the repetition history, into a byte array of
+     * 52 bytes plus 8 per position since the last irreversible move.
+     */
+    public byte[] toPacked() {
+        ByteBuffer buffer = ByteBuffer.allocate(PACKED_HEADER_SIZE + historySize * 8);
+        for (int square = 0; square < 64; square += 2) {
+            buffer.put((byte) (packPiece(board[square / 8][square % 8]) << 4 |
+                               packPiece(board[square / 8][square % 8 + 1])));
+        }
+        int flags = 0;
+        if (currentTurn == PieceColor.BLACK) flags |= 1;
+        if (whiteInCheck) flags |= 2;
+        if (blackInCheck) flags |= 4;
+        if (gameOver) flags |= 8;
+        if (enPassantTargetColor == PieceColor.BLACK) flags |= 16;
+        buffer.put((byte) flags);
+        buffer.put((byte) getCastlingRights());
+        buffer.put((byte) enPassantTargetCol);
+        buffer.put((byte) (winner == null ? 0 : winner.ordinal() + 1));
+        buffer.put((byte) (gameOverReason == null ? 0 : gameOverReason.ordinal() + 1));
+        buffer.put((byte) 0);
+        buffer.putShort((short) Math.min(halfmoveClock, Short.MAX_VALUE));
+        buffer.putInt(fullmoveNumber);
+        buffer.putInt(moveCount);
+        buffer.putInt(historySize);
+        for (int i = 0; i < historySize; i++) {
+            buffer.putLong(positionHistory[i]);
+        }
+        return buffer.array();
+    }
+
+    public static ChessBoard fromPacked(byte[] packed) {
+        ByteBuffer buffer = ByteBuffer.wrap(packed);
+        ChessBoard result = new ChessBoard(true);
+        for (int square = 0; square < 64; square += 2) {
+            int pair = buffer.get() & 0xFF;
+            result.put(square / 8, square % 8, unpackPiece(pair >>> 4));
+            result.put(square / 8, square % 8 + 1, unpackPiece(pair & 0xF));
+        }
+        int flags = buffer.get();
+        result.currentTurn = (flags & 1) != 0 ? PieceColor.BLACK : PieceColor.WHITE;
+        result.whiteInCheck = (flags & 2) != 0;
+        result.blackInCheck = (flags & 4) != 0;
+        result.gameOver = (flags & 8) != 0;
+
+        result.castlingRights = buffer.get();
+
+        result.enPassantTargetCol = buffer.get();
+        if (result.enPassantTargetCol != -1) {
+            result.enPassantTargetColor = (flags & 16) != 0 ? PieceColor.BLACK : PieceColor.WHITE;
+        }
+        int winner = buffer.get();
+        result.winner = winner == 0 ? null : PieceColor.values()[winner - 1];
+        int reason = buffer.get();
+        result.gameOverReason = reason == 0 ? null : GameOverReason.values()[reason - 1];
+        buffer.get();
+        result.halfmoveClock = buffer.getShort();
+        result.fullmoveNumber = buffer.getInt();
+        result.moveCount = buffer.getInt();
+        result.historySize = buffer.getInt();
+        result.positionHistory = new long[Math.max(16, Integer.highestOneBit(result.historySize) * 2)];
+        for (int i = 0; i < result.historySize; i++) {
+            result.positionHistory[i] = buffer.getLong();
+        }
+        return result;
+    }
+
+    private static int packPiece(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        return (piece.getType().ordinal() + 1) | (piece.getColor() == PieceColor.BLACK ? 8 : 0);
+    }
+
+    private static ChessPiece unpackPiece(int code) {
+        if (code == 0) {
+            return null;
         }
-        return null;
+        return ChessPiece.of(PIECE_TYPES[(code & 7) - 1], (code & 8) != 0 ? PieceColor.BLACK : PieceColor.WHITE);
+    }
+
+    /** The piece on a square (row * 8 + col) of a {@link #toPacked} image. */
+    static ChessPiece packedPiece(byte[] packed, int square) {
+        int pair = packed[square >> 1] & 0xFF;
+        return unpackPiece((square & 1) == 0 ? pair >>> 4 : pair & 0xF);
+    }
+
+    /** An immutable copy of the current state, safe to share with other threads. */
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(this);
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantTargetCol() {
+        return enPassantTargetCol;
+    }
+
+    public long getZobristKey() {
+        long key = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = board[row][col];
+                if (piece != null) {
+                    key ^= Zobrist.piece(piece.getType(), piece.getColor(), row * 8 + col);
+                }
+            }
+        }
+        key ^= Zobrist.castling(getCastlingRights());
+        if (enPassantTargetCol != -1 && canCaptureEnPassant()) {
+            key ^= Zobrist.enPassant(enPassantTargetCol);
+        }
+        if (currentTurn == PieceColor.BLACK) {
+            key ^= Zobrist.blackToMove();
+        }
+        return key;
+    }
+
+    /**
+     * Whether a pawn of the side to move stands beside the pawn that just double-stepped. Only
+     * then does the en-passant file change the position, so only then is it hashed.
+     */
+    private boolean canCaptureEnPassant() {
+        int target = (currentTurn == PieceColor.WHITE ? 2 : 5) * 8 + enPassantTargetCol;
+        // Squares a pawn of the other colour on the target attacks are those ours capture onto it from
+        return (Attacks.pawn(currentTurn.ordinal() ^ 1, target) & pieces(PieceType.PAWN, currentTurn)) != 0;
     }
 
     public ChessPiece getPiece(int row, int col) {
@@ -562,4 +1018,12 @@ public class ChessBoard implements Serializable {
     public PieceColor getWinner() { 
         return winner; 
     }
+
+    public GameOverReason getGameOverReason() {
+        return gameOverReason;
+    }
+
+    public boolean isDraw() {
+        return gameOver && winner == null;
+    }
 }
\ No newline at end of file
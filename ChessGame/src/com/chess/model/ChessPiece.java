@@ -2,17 +2,42 @@ package com.chess.model;
 
 import java.io.Serializable;
 
-public class ChessPiece implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    private PieceType type;
-    private PieceColor color;
-    private boolean hasMoved;
+/**
+ * A piece type and colour. There are exactly twelve instances, shared by every board, so
+ * copying or deserializing a board does not allocate pieces; whether a piece has moved is
+ * tracked by the board's castling rights and pawn ranks.
+ */
+public final class ChessPiece implements Serializable {
+    private static final long serialVersionUID = 2L;
+    private static final ChessPiece[] INSTANCES = new ChessPiece[PieceType.values().length * 2];
+
+    static {
+        for (PieceType type : PieceType.values()) {
+            for (PieceColor color : PieceColor.values()) {
+                INSTANCES[index(type, color)] = new ChessPiece(type, color);
+            }
+        }
+    }
+
+    private final PieceType type;
+    private final PieceColor color;
 
-    public ChessPiece(PieceType type, PieceColor color) {
+    private ChessPiece(PieceType type, PieceColor color) {
         this.type = type;
         this.color = color;
-        this.hasMoved = false;
+    }
+
+    public static ChessPiece of(PieceType type, PieceColor color) {
+        return INSTANCES[index(type, color)];
+    }
+
+    private static int index(PieceType type, PieceColor color) {
+        return type.ordinal() * 2 + color.ordinal();
+    }
+
+    /** Keeps deserialized pieces canonical. */
+    private Object readResolve() {
+        return of(type, color);
     }
 
     public PieceType getType() { 
@@ -22,14 +47,6 @@ public class ChessPiece implements Serializable {
     public PieceColor getColor() { 
         return color; 
     }
-    
-    public boolean hasMoved() { 
-        return hasMoved; 
-    }
-    
-    public void setMoved(boolean moved) { 
-        this.hasMoved = moved; 
-    }
 
     public String getSymbol() {
         String symbol = "";
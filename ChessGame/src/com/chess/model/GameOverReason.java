@@ -0,0 +1,16 @@
+package com.chess.model;
+
+public enum GameOverReason {
+    CHECKMATE,
+    STALEMATE,
+    THREEFOLD_REPETITION,
+    FIFTY_MOVE_RULE,
+    INSUFFICIENT_MATERIAL,
+    ABANDONED,
+    TIMEOUT;
+
+    /** Draws that a player may claim but that do not end the game on their own under FIDE rules. */
+    public boolean isClaimable() {
+        return this == THREEFOLD_REPETITION || this == FIFTY_MOVE_RULE;
+    }
+}
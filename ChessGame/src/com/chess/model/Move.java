@@ -0,0 +1,90 @@
+package com.chess.model;
+
+public final class Move {
+    public static final int NONE = 0;
+
+    private Move() {
+    }
+
+    public static int encode(int fromRow, int fromCol, int toRow, int toCol, PieceType promotion) {
+        int promo = (promotion == null) ? 0 : promotion.ordinal() + 1;
+        return ((fromRow * 8 + fromCol) << 6) | (toRow * 8 + toCol) | (promo << 12);
+    }
+
+    public static int encode(int fromRow, int fromCol, int toRow, int toCol) {
+        return encode(fromRow, fromCol, toRow, toCol, null);
+    }
+
+    public static int fromSquare(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int toSquare(int move) {
+        return move & 63;
+    }
+
+    public static int fromRow(int move) {
+        return fromSquare(move) >> 3;
+    }
+
+    public static int fromCol(int move) {
+        return fromSquare(move) & 7;
+    }
+
+    public static int toRow(int move) {
+        return toSquare(move) >> 3;
+    }
+
+    public static int toCol(int move) {
+        return toSquare(move) & 7;
+    }
+
+    public static PieceType promotion(int move) {
+        int promo = (move >>> 12) & 7;
+        return promo == 0 ? null : PieceType.values()[promo - 1];
+    }
+
+    public static String toUci(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        sb.append((char) ('a' + fromCol(move))).append((char) ('8' - fromRow(move)));
+        sb.append((char) ('a' + toCol(move))).append((char) ('8' - toRow(move)));
+        PieceType promo = promotion(move);
+        if (promo != null) {
+            sb.append(promotionLetter(promo));
+        }
+        return sb.toString();
+    }
+
+    public static int parseUci(String uci) {
+        if (uci == null || uci.length() < 4 || uci.length() > 5) {
+            return NONE;
+        }
+        int fromCol = uci.charAt(0) - 'a';
+        int fromRow = '8' - uci.charAt(1);
+        int toCol = uci.charAt(2) - 'a';
+        int toRow = '8' - uci.charAt(3);
+        if ((fromCol | fromRow | toCol | toRow) < 0 || fromCol > 7 || fromRow > 7 || toCol > 7 || toRow > 7) {
+            return NONE;
+        }
+        PieceType promo = null;
+        if (uci.length() == 5) {
+            switch (Character.toLowerCase(uci.charAt(4))) {
+                case 'q': promo = PieceType.QUEEN; break;
+                case 'r': promo = PieceType.ROOK; break;
+                case 'b': promo = PieceType.BISHOP; break;
+                case 'n': promo = PieceType.KNIGHT; break;
+                default: return NONE;
+            }
+        }
+        return encode(fromRow, fromCol, toRow, toCol, promo);
+    }
+
+    private static char promotionLetter(PieceType type) {
+        switch (type) {
+            case ROOK: return 'r';
+            case BISHOP: return 'b';
+            case KNIGHT: return 'n';
+            default: return 'q';
+        }
+    }
+}
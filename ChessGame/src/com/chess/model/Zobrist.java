@@ -0,0 +1,69 @@
+package com.chess.model;
+
+import java.util.Random;
+
+public final class Zobrist {
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    // Fixed seed: keys end up in book and index files, so they must be stable across runs
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    private static final long SIDE_KEY;
+
+    static {
+        Random random = new Random(0x43484553534B4559L);
+        for (int p = 0; p < 12; p++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECE_KEYS[p][sq] = random.nextLong();
+            }
+        }
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < 4; i++) {
+            rightKeys[i] = random.nextLong();
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            long key = 0;
+            for (int i = 0; i < 4; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    key ^= rightKeys[i];
+                }
+            }
+            CASTLING_KEYS[rights] = key;
+        }
+        for (int col = 0; col < 8; col++) {
+            EN_PASSANT_KEYS[col] = random.nextLong();
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static int pieceIndex(PieceType type, PieceColor color) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    public static long piece(PieceType type, PieceColor color, int square) {
+        return PIECE_KEYS[pieceIndex(type, color)][square];
+    }
+
+    public static long piece(int pieceIndex, int square) {
+        return PIECE_KEYS[pieceIndex][square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING_KEYS[rights & 15];
+    }
+
+    public static long enPassant(int col) {
+        return EN_PASSANT_KEYS[col];
+    }
+
+    public static long blackToMove() {
+        return SIDE_KEY;
+    }
+}
@@ -0,0 +1,30 @@
+package com.chess.network;
+
+import java.io.Serializable;
+
+/** One chat message as the server relays it: who said it, what, and when (epoch millis). */
+public final class ChatLine implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String sender;
+    private final String text;
+    private final long timeMillis;
+
+    public ChatLine(String sender, String text, long timeMillis) {
+        this.sender = sender;
+        this.text = text;
+        this.timeMillis = timeMillis;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+}
@@ -1,20 +1,38 @@
 package com.chess.network;
 
-import com.chess.model.ChessBoard;
+import com.chess.model.BoardSnapshot;
+import com.chess.model.GameOverReason;
 import com.chess.model.PieceColor;
 import com.chess.model.PieceType;
 import java.io.Serializable;
 
 public class ChessMessage implements Serializable {
     private static final long serialVersionUID = 1L;
+    /** Longest chat message the server relays, in characters. */
+    public static final int MAX_CHAT_LENGTH = 200;
     
     private MessageType type;
     private int fromRow, fromCol, toRow, toCol;
-    private ChessBoard board;
+    private BoardSnapshot board;
     private PieceColor playerColor;
     private String chatMessage;
+    private ChatLine[] chatLines;
     private PieceColor winner;
+    private GameOverReason gameOverReason;
     private PieceType promotionType;  
+    private boolean analysisEnabled;
+    private int analysisScore;
+    private int analysisDepth;
+    private String analysisSource;
+    private String principalVariation;
+    private long whiteClockMillis = -1;
+    private long blackClockMillis = -1;
+    private long sentNanos;
+    private long echoNanos;
+    private long serverNanos;
+    private int moveSequence;
+    private long heartbeatMillis;
+    private String reason;
 
     public ChessMessage(MessageType type) {
         this.type = type;
@@ -30,21 +48,72 @@ public class ChessMessage implements Serializable {
         return msg;
     }
 
-    public static ChessMessage createBoardUpdate(ChessBoard board) {
+    /** A move to play as soon as the opponent has moved, if it is still legal then. */
+    public static ChessMessage createPremoveMessage(int fromRow, int fromCol,
+                                                    int toRow, int toCol) {
+        ChessMessage msg = createMoveMessage(fromRow, fromCol, toRow, toCol);
+        msg.type = MessageType.PREMOVE;
+        return msg;
+    }
+
+    /** Withdraws the sender's queued premove. */
+    public static ChessMessage createPremoveCancel() {
+        return createPremoveMessage(-1, -1, -1, -1);
+    }
+
+    public static ChessMessage createBoardUpdate(BoardSnapshot board) {
         ChessMessage msg = new ChessMessage(MessageType.BOARD_UPDATE);
         msg.board = board;
         return msg;
     }
 
+    /** Tells a mover its move was refused, with the position it should show instead. */
+    public static ChessMessage createMoveRejected(int moveSequence, BoardSnapshot board) {
+        ChessMessage msg = new ChessMessage(MessageType.MOVE_REJECTED);
+        msg.moveSequence = moveSequence;
+        msg.board = board;
+        return msg;
+    }
+
     public static ChessMessage createPlayerAssignment(PieceColor color) {
         ChessMessage msg = new ChessMessage(MessageType.PLAYER_ASSIGNED);
         msg.playerColor = color;
         return msg;
     }
 
-    public static ChessMessage createGameOver(PieceColor winner) {
+    /** Sent instead of a player assignment when the server turns a connection away. */
+    public static ChessMessage createConnectionRejected(String reason) {
+        ChessMessage msg = new ChessMessage(MessageType.CONNECTION_REJECTED);
+        msg.reason = reason;
+        return msg;
+    }
+
+    /** A chat message from a player or spectator. */
+    public static ChessMessage createChat(String text) {
+        ChessMessage msg = new ChessMessage(MessageType.CHAT);
+        msg.chatMessage = text;
+        return msg;
+    }
+
+    /** Chat lines relayed by the server, oldest first: one flush interval's worth, or history. */
+    public static ChessMessage createChatBatch(ChatLine[] lines) {
+        ChessMessage msg = new ChessMessage(MessageType.CHAT);
+        msg.chatLines = lines;
+        return msg;
+    }
+
+    public static ChessMessage createPing() {
+        return new ChessMessage(MessageType.PING);
+    }
+
+    public static ChessMessage createPong() {
+        return new ChessMessage(MessageType.PONG);
+    }
+
+    public static ChessMessage createGameOver(PieceColor winner, GameOverReason reason) {
         ChessMessage msg = new ChessMessage(MessageType.GAME_OVER);
         msg.winner = winner;
+        msg.gameOverReason = reason;
         return msg;
     }
     
@@ -54,6 +123,22 @@ public class ChessMessage implements Serializable {
         return msg;
     }
 
+    public static ChessMessage createAnalysisRequest(boolean enabled) {
+        ChessMessage msg = new ChessMessage(MessageType.ANALYSIS_REQUEST);
+        msg.analysisEnabled = enabled;
+        return msg;
+    }
+
+    public static ChessMessage createAnalysisUpdate(int whiteScore, int depth, String source, 
+                                                    String principalVariation) {
+        ChessMessage msg = new ChessMessage(MessageType.ANALYSIS_UPDATE);
+        msg.analysisScore = whiteScore;
+        msg.analysisDepth = depth;
+        msg.analysisSource = source;
+        msg.principalVariation = principalVariation;
+        return msg;
+    }
+
     public MessageType getType() { 
         return type; 
     }
@@ -74,7 +159,11 @@ public class ChessMessage implements Serializable {
         return toCol; 
     }
     
-    public ChessBoard getBoard() { 
+    public boolean isPremoveCancel() {
+        return type == MessageType.PREMOVE && fromRow < 0;
+    }
+
+    public BoardSnapshot getBoard() { 
         return board; 
     }
     
@@ -85,10 +174,18 @@ public class ChessMessage implements Serializable {
     public PieceColor getWinner() { 
         return winner; 
     }
+
+    public GameOverReason getGameOverReason() {
+        return gameOverReason;
+    }
     
     public String getChatMessage() { 
         return chatMessage; 
     }
+
+    public ChatLine[] getChatLines() {
+        return chatLines;
+    }
     
     public PieceType getPromotionType() {
         return promotionType;
@@ -97,4 +194,89 @@ public class ChessMessage implements Serializable {
     public void setPromotionType(PieceType type) {
         this.promotionType = type;
     }
+
+    /** Remaining time of each player, measured when the message was created. */
+    public void setClocks(long whiteMillis, long blackMillis) {
+        this.whiteClockMillis = whiteMillis;
+        this.blackClockMillis = blackMillis;
+    }
+
+    public boolean hasClocks() {
+        return whiteClockMillis >= 0;
+    }
+
+    public long getClockMillis(PieceColor color) {
+        return color == PieceColor.WHITE ? whiteClockMillis : blackClockMillis;
+    }
+    
+    /** Sender's own System.nanoTime() when the message was written; opaque to the receiver. */
+    public void setSentNanos(long sentNanos) {
+        this.sentNanos = sentNanos;
+    }
+
+    public long getSentNanos() {
+        return sentNanos;
+    }
+
+    /**
+     * Echoes the timestamp of the move this update answers, with the time the server spent
+     * on it, so the mover can split its round trip into network and server time.
+     */
+    public void setEcho(long echoNanos, long serverNanos) {
+        this.echoNanos = echoNanos;
+        this.serverNanos = serverNanos;
+    }
+
+    public long getEchoNanos() {
+        return echoNanos;
+    }
+
+    public long getServerNanos() {
+        return serverNanos;
+    }
+
+    /**
+     * The client's number for a move, echoed on the board update that applies it or the
+     * rejection that refuses it; 0 when the message answers no move.
+     */
+    public void setMoveSequence(int moveSequence) {
+        this.moveSequence = moveSequence;
+    }
+
+    public int getMoveSequence() {
+        return moveSequence;
+    }
+
+    /** Sent with the player assignment: how often the client should ping, or 0 for never. */
+    public void setHeartbeatMillis(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    public long getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+    
+    public boolean isAnalysisEnabled() {
+        return analysisEnabled;
+    }
+    
+    public int getAnalysisScore() {
+        return analysisScore;
+    }
+    
+    public int getAnalysisDepth() {
+        return analysisDepth;
+    }
+    
+    public String getAnalysisSource() {
+        return analysisSource;
+    }
+    
+    public String getPrincipalVariation() {
+        return principalVariation;
+    }
 }
\ No newline at end of file
@@ -2,9 +2,16 @@ package com.chess.network;
 
 public enum MessageType {
     MOVE, 
+    PREMOVE,
     BOARD_UPDATE, 
+    MOVE_REJECTED,
     PLAYER_ASSIGNED, 
     GAME_OVER, 
     CHECK_NOTIFICATION,
-    CHAT
+    CHAT,
+    ANALYSIS_REQUEST,
+    ANALYSIS_UPDATE,
+    CONNECTION_REJECTED,
+    PING,
+    PONG
 }
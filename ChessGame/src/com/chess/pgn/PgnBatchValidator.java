@@ -0,0 +1,286 @@
+package com.chess.pgn;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.Move;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays every game of a PGN file through {@link ChessBoard#makeMove} in parallel. The file
+ * is cut into byte ranges that start on game boundaries; a fork-join pool splits the list of
+ * ranges until each task owns one, and each task streams its range with positional reads
+ * on a shared channel. Only one game per worker is in memory at any time.
+ */
+public class PgnBatchValidator {
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    public static final int MAX_REPORTED_ISSUES = 100;
+
+    private final FileChannel channel;
+    private final long[] boundaries;
+
+    /** An illegal move or unreadable starting position. */
+    public static class Issue {
+        public final long offset;
+        public final long gameOffset;
+        public final int ply;
+        public final String move;
+        public final String reason;
+
+        Issue(long offset, long gameOffset, int ply, String move, String reason) {
+            this.offset = offset;
+            this.gameOffset = gameOffset;
+            this.ply = ply;
+            this.move = move;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "offset " + offset + " (game at " + gameOffset + ", ply " + ply + "): " +
+                   reason + (move != null ? " '" + move + "'" : "");
+        }
+    }
+
+    /** Totals for a range of the file; merged up the fork-join tree. */
+    public static class Stats {
+        public long games;
+        public long positions;
+        public long invalidGames;
+        public long issueCount;
+        public final List<Issue> issues = new ArrayList<>();
+
+        void add(Issue issue) {
+            issueCount++;
+            if (issues.size() < MAX_REPORTED_ISSUES) {
+                issues.add(issue);
+            }
+        }
+
+        Stats merge(Stats later) {
+            games += later.games;
+            positions += later.positions;
+            invalidGames += later.invalidGames;
+            issueCount += later.issueCount;
+            for (Issue issue : later.issues) {
+                if (issues.size() == MAX_REPORTED_ISSUES) {
+                    break;
+                }
+                issues.add(issue);
+            }
+            return this;
+        }
+    }
+
+    public PgnBatchValidator(FileChannel channel, int chunkSize) throws IOException {
+        this.channel = channel;
+        this.boundaries = split(channel, chunkSize);
+    }
+
+    public int getChunkCount() {
+        return boundaries.length - 1;
+    }
+
+    public Stats run(ForkJoinPool pool) {
+        return pool.invoke(new ChunkTask(0, boundaries.length - 1));
+    }
+
+    private class ChunkTask extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        private final int first;
+        private final int last;
+
+        ChunkTask(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (last - first == 1) {
+                return validateRange(boundaries[first], boundaries[last]);
+            }
+            int mid = (first + last) >>> 1;
+            ChunkTask left = new ChunkTask(first, mid);
+            left.fork();
+            Stats right = new ChunkTask(mid, last).compute();
+            // Left holds the earlier offsets, so its issues are reported first
+            return left.join().merge(right);
+        }
+    }
+
+    private Stats validateRange(long start, long end) {
+        Stats stats = new Stats();
+        try (PgnReader reader = new PgnReader(new RangeInputStream(channel, start, end), start)) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                replay(game, stats);
+            }
+        } catch (IOException e) {
+            stats.add(new Issue(start, start, 0, null, "read failed: " + e.getMessage()));
+        }
+        return stats;
+    }
+
+    private static void replay(PgnGame game, Stats stats) {
+        stats.games++;
+        ChessBoard board;
+        try {
+            board = game.createStartingBoard();
+        } catch (IllegalArgumentException e) {
+            stats.invalidGames++;
+            stats.add(new Issue(game.getOffset(), game.getOffset(), 0, null, "bad FEN: " + e.getMessage()));
+            return;
+        }
+        stats.positions++;
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            String san = game.getMoves().get(i);
+            // Repetition and fifty-move draws must be claimed in over-the-board games, so play may go on
+            boolean ended = board.isGameOver() && !board.getGameOverReason().isClaimable();
+            int move = ended ? Move.NONE : San.parse(board, san);
+            if (move == Move.NONE || !board.makeMove(Move.fromRow(move), Move.fromCol(move),
+                                                     Move.toRow(move), Move.toCol(move), Move.promotion(move))) {
+                stats.invalidGames++;
+                stats.add(new Issue(game.getMoveOffset(i), game.getOffset(), i + 1, san,
+                                    ended ? "move after " + board.getGameOverReason() : "illegal move"));
+                return;
+            }
+            stats.positions++;
+        }
+    }
+
+    /**
+     * Picks chunk boundaries near multiples of chunkSize, each moved forward to the start of
+     * the next tag section (a '[' at the beginning of a line that follows a blank line).
+     */
+    static long[] split(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> cuts = new ArrayList<>();
+        cuts.add(0L);
+        long next = chunkSize;
+        while (next < size) {
+            long start = findGameStart(channel, next, size);
+            if (start >= size) {
+                break;
+            }
+            if (start > cuts.get(cuts.size() - 1)) {
+                cuts.add(start);
+            }
+            next = start + chunkSize;
+        }
+        cuts.add(size);
+        long[] result = new long[cuts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cuts.get(i);
+        }
+        return result;
+    }
+
+    private static long findGameStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(1 << 16);
+        long position = from;
+        // Start mid-line: nothing before the first newline can be a boundary
+        boolean lineStart = false;
+        boolean previousBlank = false;
+        boolean currentBlank = true;
+        while (position < size) {
+            block.clear();
+            int n = channel.read(block, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = block.get(i);
+                if (b == '\n') {
+                    previousBlank = lineStart && currentBlank;
+                    lineStart = true;
+                    currentBlank = true;
+                } else if (b == '[' && lineStart && currentBlank && previousBlank) {
+                    return position + i;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    currentBlank = false;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /** Reads [start, end) of a channel with positional reads, so channels can be shared. */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The channel is shared with other ranges and closed by the owner
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PgnBatchValidator <games.pgn> [threads] [chunkMB]");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) << 20 : DEFAULT_CHUNK_SIZE;
+
+        ChessBoard.setLoggingEnabled(false);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long startTime = System.nanoTime();
+            PgnBatchValidator validator = new PgnBatchValidator(channel, chunkSize);
+            Stats stats = validator.run(pool);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+
+            for (Issue issue : stats.issues) {
+                System.out.println("[VALIDATE] " + issue);
+            }
+            if (stats.issueCount > stats.issues.size()) {
+                System.out.println("[VALIDATE] ... " + (stats.issueCount - stats.issues.size()) + " more issues");
+            }
+            System.out.println("[VALIDATE] " + stats.games + " games, " + stats.invalidGames + " invalid, " +
+                               stats.positions + " positions in " + validator.getChunkCount() + " chunks on " +
+                               threads + " threads");
+            System.out.printf("[VALIDATE] %.2f s, %.0f games/s, %.0f positions/s%n",
+                              seconds, stats.games / seconds, stats.positions / seconds);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.chess.pgn;
+
+import com.chess.model.ChessBoard;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game from a PGN file: its tag pairs, main-line moves in SAN and the result.
+ * Comments, NAGs and variations are dropped by the reader.
+ */
+public class PgnGame {
+    public static final String UNKNOWN_RESULT = "*";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<String> moves = new ArrayList<>();
+    private long[] moveOffsets = new long[64];
+    private String result = UNKNOWN_RESULT;
+    private long offset = -1;
+
+    public PgnGame() {
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    public int getMoveCount() {
+        return moves.size();
+    }
+
+    public void addMove(String san) {
+        addMove(san, -1);
+    }
+
+    void addMove(String san, long sourceOffset) {
+        if (moves.size() == moveOffsets.length) {
+            moveOffsets = Arrays.copyOf(moveOffsets, moveOffsets.length * 2);
+        }
+        moveOffsets[moves.size()] = sourceOffset;
+        moves.add(san);
+    }
+
+    /** Byte offset of the move in the source file, or -1 if the game was not read from one. */
+    public long getMoveOffset(int index) {
+        return moveOffsets[index];
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /** Byte offset of the first character of this game in the source file, or -1. */
+    public long getOffset() {
+        return offset;
+    }
+
+    void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /** Returns the position the game starts from, honouring the SetUp/FEN tags. */
+    public ChessBoard createStartingBoard() {
+        String fen = tags.get("FEN");
+        if (fen != null && !"0".equals(tags.get("SetUp"))) {
+            return ChessBoard.fromFen(fen);
+        }
+        return new ChessBoard();
+    }
+}
@@ -0,0 +1,288 @@
+package com.chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams games out of a PGN file one at a time. Only the game being parsed is held in
+ * memory, so collections of any size can be read. Comments, NAGs, annotation glyphs and
+ * variations are skipped; moves are returned as SAN text and resolved by {@link San}.
+ */
+public class PgnReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TOKEN = 256;
+    private static final int MAX_TAG_VALUE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bufferOffset;
+    private boolean lineStart = true;
+
+    private final StringBuilder token = new StringBuilder(MAX_TOKEN);
+    private byte[] tagBytes = new byte[256];
+
+    public PgnReader(InputStream in) {
+        this(in, 0);
+    }
+
+    /** Reads from a stream that begins at the given byte offset of the underlying file. */
+    public PgnReader(InputStream in, long startOffset) {
+        this.in = in;
+        this.bufferOffset = startOffset;
+    }
+
+    public static PgnReader open(Path path) throws IOException {
+        return new PgnReader(Files.newInputStream(path));
+    }
+
+    /** Byte offset of the next unread character. */
+    public long getOffset() {
+        return bufferOffset + position;
+    }
+
+    /**
+     * Returns the next game, or null at end of input. A game ends at its result token,
+     * at the tag section of the next game, or at end of input.
+     */
+    public PgnGame next() throws IOException {
+        PgnGame game = null;
+        boolean inMoves = false;
+        while (true) {
+            skipWhitespace();
+            int c = peek();
+            if (c < 0) {
+                return game;
+            }
+            if (c == '%' && lineStart) {
+                skipLine();
+                continue;
+            }
+            if (c == '[' && inMoves) {
+                // Next game's tags without a result token: this game is over
+                return game;
+            }
+            if (game == null) {
+                game = new PgnGame();
+                game.setOffset(getOffset());
+            }
+            switch (c) {
+                case '[':
+                    read();
+                    readTag(game);
+                    break;
+                case '{':
+                    skipComment();
+                    break;
+                case ';':
+                    skipLine();
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                case '$':
+                    read();
+                    while (isDigit(peek())) {
+                        read();
+                    }
+                    break;
+                case '*':
+                    read();
+                    game.setResult(PgnGame.UNKNOWN_RESULT);
+                    return game;
+                case '.':
+                case '!':
+                case '?':
+                case ')':
+                case ']':
+                case '}':
+                    read();
+                    break;
+                default: {
+                    long tokenOffset = getOffset();
+                    if (!readSymbol()) {
+                        read();
+                        break;
+                    }
+                    inMoves = true;
+                    String symbol = token.toString();
+                    if (symbol.equals("1-0") || symbol.equals("0-1") || symbol.equals("1/2-1/2")) {
+                        game.setResult(symbol);
+                        return game;
+                    }
+                    if (isMoveNumber(symbol)) {
+                        break;
+                    }
+                    if (symbol.indexOf('.') >= 0) {
+                        // "12.e4" written without a space
+                        symbol = symbol.substring(symbol.lastIndexOf('.') + 1);
+                        tokenOffset += token.length() - symbol.length();
+                        if (symbol.isEmpty()) {
+                            break;
+                        }
+                    }
+                    game.addMove(symbol, tokenOffset);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isMoveNumber(String symbol) {
+        int i = 0;
+        while (i < symbol.length() && isDigit(symbol.charAt(i))) {
+            i++;
+        }
+        if (i == 0) {
+            return false;
+        }
+        while (i < symbol.length() && symbol.charAt(i) == '.') {
+            i++;
+        }
+        return i == symbol.length();
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSymbolChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) ||
+               c == '_' || c == '+' || c == '#' || c == '=' || c == ':' || c == '-' || c == '/' || c == '.';
+    }
+
+    private boolean readSymbol() throws IOException {
+        token.setLength(0);
+        while (isSymbolChar(peek())) {
+            int c = read();
+            if (token.length() < MAX_TOKEN) {
+                token.append((char) c);
+            }
+        }
+        return token.length() > 0;
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        skipWhitespace();
+        token.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && c != '"' && c != ']' && !isWhitespace(c)) {
+            read();
+            if (token.length() < MAX_TOKEN) {
+                token.append((char) c);
+            }
+        }
+        String name = token.toString();
+        skipWhitespace();
+        String value = "";
+        if (peek() == '"') {
+            read();
+            int length = 0;
+            while ((c = read()) >= 0 && c != '"' && c != '\n') {
+                if (c == '\\') {
+                    int escaped = peek();
+                    if (escaped == '"' || escaped == '\\') {
+                        c = read();
+                    }
+                }
+                if (length == tagBytes.length && length < MAX_TAG_VALUE) {
+                    byte[] grown = new byte[length * 2];
+                    System.arraycopy(tagBytes, 0, grown, 0, length);
+                    tagBytes = grown;
+                }
+                if (length < tagBytes.length) {
+                    tagBytes[length++] = (byte) c;
+                }
+            }
+            value = new String(tagBytes, 0, length, StandardCharsets.UTF_8);
+        }
+        while ((c = peek()) >= 0 && c != ']' && c != '\n') {
+            read();
+        }
+        if (c == ']') {
+            read();
+        }
+        if (!name.isEmpty()) {
+            game.setTag(name, value);
+        }
+    }
+
+    private void skipComment() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '}') {
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth == 0) {
+                    return;
+                }
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            }
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    private void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && (isWhitespace(c) || c >= 0x80)) {
+            read();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int c = buffer[position++] & 0xFF;
+        lineStart = c == '\n';
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, BUFFER_SIZE);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,120 @@
+package com.chess.pgn;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Writes games in export format: the seven tag roster first, then any other tags, then
+ * movetext wrapped at 80 columns. Games are written as they come, so output size is unbounded.
+ */
+public class PgnWriter implements Closeable, Flushable {
+    private static final int LINE_WIDTH = 80;
+    private static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    private final Writer out;
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static PgnWriter open(Path path) throws IOException {
+        return new PgnWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+    }
+
+    public void write(PgnGame game) throws IOException {
+        Map<String, String> tags = game.getTags();
+        for (String name : ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : tags.get(name);
+            if (value == null) {
+                value = name.equals("Date") ? "????.??.??" : "?";
+            }
+            writeTag(name, value);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+
+        boolean blackFirst = false;
+        int moveNumber = 1;
+        String fen = game.getTag("FEN");
+        if (fen != null) {
+            String[] fields = fen.trim().split("\\s+");
+            blackFirst = fields.length > 1 && fields[1].equals("b");
+            if (fields.length > 5) {
+                try {
+                    moveNumber = Math.max(1, Integer.parseInt(fields[5]));
+                } catch (NumberFormatException e) {
+                    moveNumber = 1;
+                }
+            }
+        }
+
+        StringBuilder line = new StringBuilder(LINE_WIDTH + 16);
+        int ply = blackFirst ? 1 : 0;
+        for (String san : game.getMoves()) {
+            // Keep move numbers on the same line as their move
+            if (ply % 2 == 0) {
+                append(line, moveNumber + ". " + san);
+            } else if (ply == 1 && blackFirst) {
+                append(line, moveNumber + "... " + san);
+            } else {
+                append(line, san);
+            }
+            if (ply % 2 == 1) {
+                moveNumber++;
+            }
+            ply++;
+        }
+        append(line, game.getResult());
+        out.write(line.toString());
+        out.write("\n\n");
+    }
+
+    private void append(StringBuilder line, String token) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_WIDTH) {
+            out.write(line.toString());
+            out.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String roster : ROSTER) {
+            if (roster.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,248 @@
+package com.chess.pgn;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.ChessPiece;
+import com.chess.model.Move;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+
+/**
+ * Converts between Standard Algebraic Notation and packed {@link Move} ints. Legality is
+ * decided by {@link ChessBoard#isValidMove}, so SAN is accepted exactly when the server
+ * would accept the same move.
+ */
+public final class San {
+
+    private San() {
+    }
+
+    /**
+     * Resolves a SAN move in the given position. Returns {@link Move#NONE} if the text is
+     * malformed, matches no legal move, or is ambiguous.
+     */
+    public static int parse(ChessBoard board, String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if (end < 2) {
+            return Move.NONE;
+        }
+        String text = san.substring(0, end);
+        PieceColor color = board.getCurrentTurn();
+        int homeRow = color == PieceColor.WHITE ? 7 : 0;
+
+        if (text.equals("O-O") || text.equals("0-0")) {
+            return resolveCastling(board, homeRow, 6);
+        }
+        if (text.equals("O-O-O") || text.equals("0-0-0")) {
+            return resolveCastling(board, homeRow, 2);
+        }
+
+        int pos = 0;
+        PieceType type = PieceType.PAWN;
+        PieceType fromLetter = pieceType(text.charAt(0));
+        if (fromLetter != null) {
+            type = fromLetter;
+            pos = 1;
+        }
+
+        PieceType promotion = null;
+        if (type == PieceType.PAWN) {
+            char last = text.charAt(end - 1);
+            PieceType promo = pieceType(last);
+            if (promo != null) {
+                if (promo == PieceType.KING) {
+                    return Move.NONE;
+                }
+                promotion = promo;
+                end--;
+                if (end > 0 && text.charAt(end - 1) == '=') {
+                    end--;
+                }
+            }
+        }
+
+        // What is left is [file][rank][x|-]file rank, with separators ignored
+        int[] files = new int[3];
+        int[] ranks = new int[3];
+        int squares = 0;
+        for (int i = pos; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == 'x' || c == '-' || c == ':') {
+                continue;
+            }
+            if (squares == 3) {
+                return Move.NONE;
+            }
+            if (c >= 'a' && c <= 'h') {
+                files[squares] = c - 'a';
+                ranks[squares] = -1;
+                if (i + 1 < end && text.charAt(i + 1) >= '1' && text.charAt(i + 1) <= '8') {
+                    ranks[squares] = '8' - text.charAt(++i);
+                }
+                squares++;
+            } else if (c >= '1' && c <= '8') {
+                files[squares] = -1;
+                ranks[squares] = '8' - c;
+                squares++;
+            } else {
+                return Move.NONE;
+            }
+        }
+        if (squares == 0 || files[squares - 1] < 0 || ranks[squares - 1] < 0) {
+            return Move.NONE;
+        }
+        if (squares == 3) {
+            return Move.NONE;
+        }
+        int toCol = files[squares - 1];
+        int toRow = ranks[squares - 1];
+        int fromCol = squares == 2 ? files[0] : -1;
+        int fromRow = squares == 2 ? ranks[0] : -1;
+
+        boolean lastRank = type == PieceType.PAWN && toRow == (color == PieceColor.WHITE ? 0 : 7);
+        if (lastRank != (promotion != null)) {
+            return Move.NONE;
+        }
+
+        int found = Move.NONE;
+        for (int row = 0; row < 8; row++) {
+            if (fromRow >= 0 && row != fromRow) {
+                continue;
+            }
+            for (int col = 0; col < 8; col++) {
+                if (fromCol >= 0 && col != fromCol) {
+                    continue;
+                }
+                if (type == PieceType.PAWN && fromCol < 0 && col != toCol) {
+                    continue;
+                }
+                ChessPiece piece = board.getPiece(row, col);
+                if (piece == null || piece.getType() != type || piece.getColor() != color) {
+                    continue;
+                }
+                if (board.isValidMove(row, col, toRow, toCol)) {
+                    if (found != Move.NONE) {
+                        return Move.NONE;
+                    }
+                    found = Move.encode(row, col, toRow, toCol, promotion);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int resolveCastling(ChessBoard board, int row, int toCol) {
+        ChessPiece king = board.getPiece(row, 4);
+        if (king == null || king.getType() != PieceType.KING || king.getColor() != board.getCurrentTurn()) {
+            return Move.NONE;
+        }
+        return board.isValidMove(row, 4, row, toCol) ? Move.encode(row, 4, row, toCol) : Move.NONE;
+    }
+
+    /**
+     * Formats a legal move as SAN, including the check or mate suffix. The board is not modified.
+     */
+    public static String toSan(ChessBoard board, int move) {
+        int fromRow = Move.fromRow(move);
+        int fromCol = Move.fromCol(move);
+        int toRow = Move.toRow(move);
+        int toCol = Move.toCol(move);
+        ChessPiece piece = board.getPiece(fromRow, fromCol);
+        if (piece == null) {
+            throw new IllegalArgumentException("No piece on " + Move.toUci(move).substring(0, 2));
+        }
+
+        StringBuilder sb = new StringBuilder(8);
+        PieceType type = piece.getType();
+        if (type == PieceType.KING && Math.abs(fromCol - toCol) == 2) {
+            sb.append(toCol == 6 ? "O-O" : "O-O-O");
+        } else if (type == PieceType.PAWN) {
+            if (fromCol != toCol) {
+                sb.append((char) ('a' + fromCol)).append('x');
+            }
+            appendSquare(sb, toRow, toCol);
+            if (toRow == 0 || toRow == 7) {
+                PieceType promotion = Move.promotion(move);
+                sb.append('=').append(letter(promotion != null ? promotion : PieceType.QUEEN));
+            }
+        } else {
+            sb.append(letter(type));
+            appendDisambiguation(sb, board, piece, fromRow, fromCol, toRow, toCol);
+            if (board.getPiece(toRow, toCol) != null) {
+                sb.append('x');
+            }
+            appendSquare(sb, toRow, toCol);
+        }
+
+        ChessBoard after = board.copy();
+        if (after.makeMove(fromRow, fromCol, toRow, toCol, Move.promotion(move))) {
+            if (after.isGameOver() && after.getWinner() != null) {
+                sb.append('#');
+            } else if (after.isInCheck(after.getCurrentTurn())) {
+                sb.append('+');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendDisambiguation(StringBuilder sb, ChessBoard board, ChessPiece piece,
+                                             int fromRow, int fromCol, int toRow, int toCol) {
+        boolean ambiguous = false;
+        boolean sameCol = false;
+        boolean sameRow = false;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if (row == fromRow && col == fromCol) {
+                    continue;
+                }
+                ChessPiece other = board.getPiece(row, col);
+                if (other == null || other.getType() != piece.getType() || other.getColor() != piece.getColor()) {
+                    continue;
+                }
+                if (board.isValidMove(row, col, toRow, toCol)) {
+                    ambiguous = true;
+                    sameCol |= col == fromCol;
+                    sameRow |= row == fromRow;
+                }
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameCol) {
+            sb.append((char) ('a' + fromCol));
+        } else if (!sameRow) {
+            sb.append((char) ('8' - fromRow));
+        } else {
+            sb.append((char) ('a' + fromCol)).append((char) ('8' - fromRow));
+        }
+    }
+
+    private static void appendSquare(StringBuilder sb, int row, int col) {
+        sb.append((char) ('a' + col)).append((char) ('8' - row));
+    }
+
+    private static PieceType pieceType(char c) {
+        switch (c) {
+            case 'K': return PieceType.KING;
+            case 'Q': return PieceType.QUEEN;
+            case 'R': return PieceType.ROOK;
+            case 'B': return PieceType.BISHOP;
+            case 'N': return PieceType.KNIGHT;
+            default: return null;
+        }
+    }
+
+    private static char letter(PieceType type) {
+        switch (type) {
+            case KING: return 'K';
+            case QUEEN: return 'Q';
+            case ROOK: return 'R';
+            case BISHOP: return 'B';
+            case KNIGHT: return 'N';
+            default: return 'P';
+        }
+    }
+}
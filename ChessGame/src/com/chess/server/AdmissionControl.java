@@ -0,0 +1,82 @@
+package com.chess.server;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides at the accept loop whether a new connection gets a handler thread. It bounds the
+ * open connections, the connections still in their stream handshake, and the rate at which
+ * any one address may connect. A limit of 0 turns that check off.
+ */
+class AdmissionControl {
+    private static final long SWEEP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final int maxConnections;
+    private final int maxHandshakes;
+    private final double ratePerSecond;
+    private final int burst;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger handshakes = new AtomicInteger();
+    // Guarded by admit; both accept threads go through it
+    private final Map<InetAddress, TokenBucket> buckets = new HashMap<>();
+    private long nextSweepNanos = System.nanoTime() + SWEEP_NANOS;
+    private long refused;
+
+    AdmissionControl(int maxConnections, int maxHandshakes, double ratePerSecond, int burst) {
+        this.maxConnections = maxConnections;
+        this.maxHandshakes = maxHandshakes;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * Returns null and counts the connection as open and handshaking if it may in, otherwise
+     * the reason it is refused. Called from the player and spectator accept threads.
+     */
+    synchronized String admit(InetAddress address) {
+        long now = System.nanoTime();
+        if (now >= nextSweepNanos) {
+            // A full bucket behaves exactly like a fresh one, so it can go
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+            nextSweepNanos = now + SWEEP_NANOS;
+        }
+        String reason = null;
+        if (maxConnections > 0 && connections.get() >= maxConnections) {
+            reason = "server full (" + maxConnections + " connections)";
+        } else if (maxHandshakes > 0 && handshakes.get() >= maxHandshakes) {
+            reason = "too many connections starting";
+        } else if (ratePerSecond > 0 &&
+                   !buckets.computeIfAbsent(address, a -> new TokenBucket(ratePerSecond, burst)).tryTake(now)) {
+            reason = "too many connections from " + address.getHostAddress();
+        }
+        if (reason != null) {
+            // Logged sparingly: a storm would otherwise turn into a logging storm
+            if (Long.bitCount(++refused) == 1) {
+                System.out.println("[SERVER] Refused connection #" + refused + ": " + reason);
+            }
+            return reason;
+        }
+        connections.incrementAndGet();
+        handshakes.incrementAndGet();
+        return null;
+    }
+
+    /** The connection's streams are up, or it failed before they were. */
+    void handshakeFinished() {
+        handshakes.decrementAndGet();
+    }
+
+    void connectionClosed() {
+        connections.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return (maxConnections > 0 ? "max " + maxConnections + " connections" : "unlimited connections") +
+               (maxHandshakes > 0 ? ", " + maxHandshakes + " handshaking" : "") +
+               (ratePerSecond > 0 ? ", " + ratePerSecond + "/s per address (burst " + burst + ")" : "");
+    }
+}
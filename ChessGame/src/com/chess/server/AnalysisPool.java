@@ -0,0 +1,91 @@
+package com.chess.server;
+
+import com.chess.book.OpeningBook;
+import com.chess.engine.Searcher;
+import com.chess.tablebase.Tablebase;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server's analysis threads, shared by every session. At most {@code threads} searches
+ * run at once, each on a thread that keeps one Searcher with a small transposition table;
+ * a few more wait in a short queue, and past that a request is dropped, so hints thin out
+ * under load instead of costing every game its own threads and table. Updates for all
+ * sessions are published from one thread.
+ */
+class AnalysisPool {
+    // 16 bytes an entry, so 1 MB per search thread
+    private static final int TT_ENTRIES = 1 << 16;
+
+    private final int threads;
+    private final int queue;
+    private final ThreadPoolExecutor searches;
+    private final ScheduledExecutorService publisher;
+    private final ThreadLocal<Searcher> searchers;
+    private final AtomicLong dropped = new AtomicLong();
+
+    AnalysisPool(int threads, int queue, OpeningBook book, Tablebase tablebase) {
+        this.threads = Math.max(1, threads);
+        this.queue = Math.max(1, queue);
+        searches = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(this.queue),
+                                          r -> daemon(r, "analysis-search"));
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "analysis-publisher"));
+        searchers = ThreadLocal.withInitial(() -> new Searcher(book, tablebase, TT_ENTRIES));
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }
+
+    /** Queues a search. Returns null if every thread is busy and the queue is full. */
+    FutureTask<?> submit(Runnable search) {
+        FutureTask<?> task = new FutureTask<>(search, null);
+        try {
+            searches.execute(task);
+            return task;
+        } catch (RejectedExecutionException e) {
+            // Logged sparingly: under load this happens on every move
+            if (Long.bitCount(dropped.incrementAndGet()) == 1) {
+                System.out.println("[ANALYSIS] Pool busy, dropped request #" + dropped.get());
+            }
+            return null;
+        }
+    }
+
+    /** Cancels a search and frees its queue slot if it has not started. */
+    void cancel(FutureTask<?> task) {
+        task.cancel(false);
+        searches.remove(task);
+    }
+
+    /** True if searches are waiting for a thread. */
+    boolean isContended() {
+        return !searches.getQueue().isEmpty();
+    }
+
+    /** The calling search thread's own Searcher. */
+    Searcher searcher() {
+        return searchers.get();
+    }
+
+    ScheduledFuture<?> schedulePublisher(Runnable publish, long periodMillis) {
+        return publisher.scheduleWithFixedDelay(publish, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return threads + " threads, " + queue + " waiting, " +
+               TT_ENTRIES * 16 / 1024 + " KB table each";
+    }
+}
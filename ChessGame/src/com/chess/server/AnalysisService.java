@@ -0,0 +1,126 @@
+package com.chess.server;
+
+import com.chess.engine.Position;
+import com.chess.engine.Searcher;
+import com.chess.model.Move;
+import com.chess.network.ChessMessage;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Background analysis of one session's current position, run on the server's shared
+ * {@link AnalysisPool}. Each completed iteration replaces the pending update; a publisher
+ * sends at most one update per throttle interval, so slow iterations cost nothing and fast
+ * ones are coalesced.
+ */
+public class AnalysisService {
+    public static final long THROTTLE_MS = 250;
+    public static final long TIME_LIMIT_MS = 30_000;
+    /** Least time a search keeps its pool thread once other sessions are waiting for one. */
+    public static final long FAIR_SLICE_MS = 1000;
+
+    private final AnalysisPool pool;
+    private final Consumer<ChessMessage> sink;
+    private final ScheduledFuture<?> publisher;
+    private final AtomicReference<PendingUpdate> pending = new AtomicReference<>();
+
+    private FutureTask<?> task;
+    // The pool thread's searcher while it is running this session's search
+    private Searcher running;
+    private long generation;
+
+    private static class PendingUpdate {
+        final long generation;
+        final ChessMessage message;
+
+        PendingUpdate(long generation, ChessMessage message) {
+            this.generation = generation;
+            this.message = message;
+        }
+    }
+
+    AnalysisService(AnalysisPool pool, Consumer<ChessMessage> sink) {
+        this.pool = pool;
+        this.sink = sink;
+        this.publisher = pool.schedulePublisher(this::publish, THROTTLE_MS);
+    }
+
+    /** Starts analysing the given position, cancelling any analysis in progress. */
+    public synchronized void start(Position position) {
+        cancel();
+        final long id = generation;
+        final boolean whiteToMove = position.getSideToMove() == Position.WHITE;
+        task = pool.submit(() -> {
+            Searcher searcher = pool.searcher();
+            synchronized (this) {
+                if (id != generation) {
+                    return;
+                }
+                running = searcher;
+                searcher.clearStop();
+            }
+            long startedNanos = System.nanoTime();
+            try {
+                searcher.search(position, Searcher.MAX_DEPTH, TIME_LIMIT_MS,
+                    (source, depth, score, pv, pvLength, nodes) -> {
+                        StringBuilder line = new StringBuilder();
+                        for (int i = 0; i < pvLength; i++) {
+                            if (i > 0) {
+                                line.append(' ');
+                            }
+                            line.append(Move.toUci(pv[i]));
+                        }
+                        int whiteScore = whiteToMove ? score : -score;
+                        pending.set(new PendingUpdate(id, ChessMessage.createAnalysisUpdate(
+                            whiteScore, depth, source.name().toLowerCase(), line.toString())));
+                        // The last iteration stays published; the thread moves on to a waiting session
+                        if (pool.isContended() && (System.nanoTime() - startedNanos) / 1_000_000 >= FAIR_SLICE_MS) {
+                            searcher.stop();
+                        }
+                    });
+            } finally {
+                synchronized (this) {
+                    running = null;
+                }
+            }
+        });
+    }
+
+    /** Stops the running analysis and drops any update it has not published yet. */
+    public synchronized void cancel() {
+        generation++;
+        if (running != null) {
+            // The pool thread goes on to other sessions' searches once this one returns
+            running.stop();
+        }
+        if (task != null) {
+            pool.cancel(task);
+            task = null;
+        }
+        pending.set(null);
+    }
+
+    private void publish() {
+        PendingUpdate update = pending.getAndSet(null);
+        if (update == null) {
+            return;
+        }
+        synchronized (this) {
+            if (update.generation != generation) {
+                return;
+            }
+        }
+        try {
+            sink.accept(update.message);
+        } catch (Exception e) {
+            System.err.println("[ANALYSIS] Failed to publish update: " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        publisher.cancel(false);
+    }
+}
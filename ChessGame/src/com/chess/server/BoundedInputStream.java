@@ -0,0 +1,57 @@
+package com.chess.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Caps the bytes a client may send for one message. Deserialization materialises a whole
+ * String before any filter sees it, so the cap has to sit below the ObjectInputStream;
+ * {@link #startMessage()} is called before each read.
+ */
+class BoundedInputStream extends FilterInputStream {
+    private final int limit;
+    private int count;
+
+    BoundedInputStream(InputStream in, int limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    void startMessage() {
+        count = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            consumed(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, Math.min(length, limit - count + 1));
+        if (n > 0) {
+            consumed(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - count + 1));
+        consumed((int) skipped);
+        return skipped;
+    }
+
+    private void consumed(int n) throws StreamCorruptedException {
+        count += n;
+        if (count > limit) {
+            throw new StreamCorruptedException("Message over " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.chess.server;
+
+import com.chess.network.ChatLine;
+import com.chess.network.ChessMessage;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A game's chat. Lines are checked and stamped as they arrive, kept in a fixed ring of recent
+ * history for late joiners, and relayed in one batch per flush interval, so a busy room costs
+ * each recipient one message per interval rather than one per line. A flush only queues the
+ * batch on each connection, whose own writer sends it, so a slow reader delays nobody else.
+ * <p>
+ * Recipients subscribe under the same lock a flush takes its batch with, so a late joiner gets
+ * every line exactly once: in its history if already flushed, otherwise in the next batch.
+ */
+class ChatRoom {
+    private static final int HISTORY = 50;
+    private static final long FLUSH_MILLIS = 100;
+
+    private final ChessServer server;
+    private final ChatLine[] history = new ChatLine[HISTORY];
+    // Lines ever posted; the next one goes in history[posted % HISTORY]
+    private long posted;
+    private final List<ChatLine> pending = new ArrayList<>();
+    private final Set<ClientHandler> subscribers = new LinkedHashSet<>();
+    private TimerWheel.Timeout flush;
+
+    ChatRoom(ChessServer server) {
+        this.server = server;
+    }
+
+    /** Queues a line for the next batch; empty or overlong text is dropped. Returns true if kept. */
+    synchronized boolean post(String sender, String text) {
+        if (text == null) {
+            return false;
+        }
+        text = text.strip();
+        if (text.isEmpty() || text.length() > ChessMessage.MAX_CHAT_LENGTH) {
+            return false;
+        }
+        ChatLine line = new ChatLine(sender, text, System.currentTimeMillis());
+        history[(int) (posted++ % HISTORY)] = line;
+        pending.add(line);
+        if (flush == null) {
+            flush = server.scheduleSessionEvent(this::flush, FLUSH_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a recipient for future batches and returns the retained lines already sent to
+     * everyone else, oldest first, or null if there are none.
+     */
+    synchronized ChessMessage subscribe(ClientHandler recipient) {
+        subscribers.add(recipient);
+        // Lines still pending reach the new recipient with the next batch
+        long flushed = posted - pending.size();
+        int count = (int) Math.max(0, flushed - Math.max(0, posted - HISTORY));
+        if (count == 0) {
+            return null;
+        }
+        ChatLine[] lines = new ChatLine[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = history[(int) ((flushed - count + i) % HISTORY)];
+        }
+        return ChessMessage.createChatBatch(lines);
+    }
+
+    synchronized void unsubscribe(ClientHandler recipient) {
+        subscribers.remove(recipient);
+    }
+
+    /** Runs on a session-event thread. */
+    private void flush() {
+        ChatLine[] batch;
+        ClientHandler[] recipients;
+        synchronized (this) {
+            batch = pending.toArray(new ChatLine[0]);
+            pending.clear();
+            flush = null;
+            recipients = subscribers.toArray(new ClientHandler[0]);
+        }
+        ChessMessage message = ChessMessage.createChatBatch(batch);
+        for (ClientHandler recipient : recipients) {
+            recipient.sendMessage(message);
+        }
+    }
+}
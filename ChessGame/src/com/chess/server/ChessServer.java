@@ -1,61 +1,266 @@
 package com.chess.server;
 
+import com.chess.archive.GameArchive;
+import com.chess.book.OpeningBook;
 import com.chess.model.ChessBoard;
-import com.chess.model.PieceColor;
-import com.chess.model.PieceType;
+import com.chess.pgn.PgnGame;
+import com.chess.tablebase.Tablebase;
 import com.chess.network.ChessMessage;
-import com.chess.network.MessageType;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class ChessServer {
     private static final int PORT = 8888;
-    private ChessBoard board;
-    private List<ClientHandler> clients;
-    private int playerCount;
+    private static final long DEFAULT_PARK_IDLE_SECONDS = 60;
+    private static final long DEFAULT_HEARTBEAT_MILLIS = 5000;
+    private static final int HEARTBEAT_MISSES = 3;
+    private static final int DEFAULT_MAX_CONNECTIONS = 4096;
+    private static final int DEFAULT_MAX_HANDSHAKES = 256;
+    private static final double DEFAULT_ACCEPT_RATE = 50;
+    private static final int DEFAULT_ACCEPT_BURST = 100;
+    private static final int DEFAULT_HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+    private static final int SEND_BUFFER_BYTES = 32 * 1024;
+    private static final int DEFAULT_SPECTATOR_PORT = PORT + 1;
+    private static final int SESSION_EVENT_THREADS = 2;
+    // Games are safe in the PGN file at once; their index entries reach disk this often
+    private static final long ARCHIVE_FLUSH_SECONDS = 60;
+    /** Per-connection and per-move logging; -Dchess.verbose=false keeps only game lifecycle lines. */
+    static final boolean VERBOSE = Boolean.parseBoolean(System.getProperty("chess.verbose", "true"));
+    private final Set<GameSession> sessions = ConcurrentHashMap.newKeySet();
+    private GameSession waitingSession;
+    // The most recently started game, which spectators are sent to
+    private volatile GameSession featured;
+    private long nextSessionId = 1;
+    private final OpeningBook openingBook;
+    private final Tablebase tablebase;
+    private final AnalysisPool analysisPool;
+    private final GameArchive archive;
+    private final ScheduledExecutorService archiveWriter;
+    private final Path parkDirectory;
+    private final TimeControl timeControl;
+    private final long parkIdleMillis;
+    private final long heartbeatMillis;
+    private final long heartbeatTimeoutMillis;
+    private final AdmissionControl admission;
+    private final int handshakeTimeoutMillis;
+    private final MessageLimits messageLimits = new MessageLimits();
+    private final TimerWheel timers = new TimerWheel(10, TimeUnit.MILLISECONDS, "session-timers");
+    // Runs what session timers trigger, so the wheel thread itself never waits on a session lock
+    private final ExecutorService sessionEvents = Executors.newFixedThreadPool(SESSION_EVENT_THREADS, r -> {
+        Thread thread = new Thread(r, "session-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int spectatorPort;
 
     public ChessServer() {
-        board = new ChessBoard();
-        clients = new ArrayList<>();
-        playerCount = 0;
+        openingBook = openBook();
+        tablebase = openTablebase();
+        int analysisThreads = Integer.getInteger("chess.analysis.threads",
+                                                 Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        analysisPool = new AnalysisPool(analysisThreads,
+                                        Integer.getInteger("chess.analysis.queue", 4 * analysisThreads),
+                                        openingBook, tablebase);
+        archive = openArchive();
+        archiveWriter = archive == null ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "archive-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        parkDirectory = archive == null ? null : openParkDirectory();
+        if (archiveWriter != null) {
+            archiveWriter.scheduleWithFixedDelay(this::flushArchive, ARCHIVE_FLUSH_SECONDS,
+                                                 ARCHIVE_FLUSH_SECONDS, TimeUnit.SECONDS);
+        }
+        timeControl = readTimeControl();
+        parkIdleMillis = Long.getLong("chess.park.idle", DEFAULT_PARK_IDLE_SECONDS) * 1000;
+        heartbeatMillis = Math.max(0, Long.getLong("chess.heartbeat", DEFAULT_HEARTBEAT_MILLIS));
+        heartbeatTimeoutMillis = Long.getLong("chess.heartbeat.timeout", HEARTBEAT_MISSES * heartbeatMillis);
+        admission = new AdmissionControl(Integer.getInteger("chess.max.connections", DEFAULT_MAX_CONNECTIONS),
+                                         Integer.getInteger("chess.max.handshakes", DEFAULT_MAX_HANDSHAKES),
+                                         Double.parseDouble(System.getProperty("chess.accept.rate",
+                                                                               String.valueOf(DEFAULT_ACCEPT_RATE))),
+                                         Integer.getInteger("chess.accept.burst", DEFAULT_ACCEPT_BURST));
+        handshakeTimeoutMillis = Integer.getInteger("chess.handshake.timeout", DEFAULT_HANDSHAKE_TIMEOUT_MILLIS);
+        spectatorPort = Integer.getInteger("chess.spectator.port", DEFAULT_SPECTATOR_PORT);
+    }
+
+    private static TimeControl readTimeControl() {
+        String text = System.getProperty("chess.clock");
+        if (text == null) {
+            return null;
+        }
+        try {
+            return TimeControl.parse(text);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[SERVER] " + e.getMessage() + ", games are untimed");
+            return null;
+        }
+    }
+
+    private static GameArchive openArchive() {
+        String path = System.getProperty("chess.archive");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return GameArchive.open(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("[SERVER] Could not open game archive " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Where parked sessions keep their move lists; stale files from an earlier run are removed. */
+    private static Path openParkDirectory() {
+        Path directory = Paths.get(System.getProperty("chess.archive"), "parked");
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "session-*.san")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            return directory;
+        } catch (IOException e) {
+            System.err.println("[SERVER] Could not use " + directory + ", parked games keep their moves in memory: " +
+                               e.getMessage());
+            return null;
+        }
+    }
+
+    /** The directory for parked move lists, or null if they stay on the heap. */
+    Path getParkDirectory() {
+        return parkDirectory;
+    }
+
+    boolean isArchiving() {
+        return archive != null;
+    }
+
+    void archiveGame(PgnGame game) {
+        if (archive == null) {
+            return;
+        }
+        archiveWriter.execute(() -> {
+            try {
+                long id = archive.add(game);
+                System.out.println("[ARCHIVE] Stored game #" + id);
+            } catch (IOException e) {
+                System.err.println("[ARCHIVE] Failed to store game: " + e.getMessage());
+            }
+        });
+    }
+
+    private void flushArchive() {
+        try {
+            archive.flush();
+        } catch (IOException e) {
+            System.err.println("[ARCHIVE] Failed to flush index: " + e.getMessage());
+        }
+    }
+
+    private static OpeningBook openBook() {
+        String path = System.getProperty("chess.book");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("[SERVER] Could not open opening book " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Tablebase openTablebase() {
+        String path = System.getProperty("chess.tablebases");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Tablebase.open(Paths.get(path));
+        } catch (IOException e) {
+            System.err.println("[SERVER] Could not open tablebases " + path + ": " + e.getMessage());
+            return null;
+        }
     }
 
     public void start() {
         System.out.println("═══════════════════════════════════════");
         System.out.println("Chess Server Started ");
         System.out.println("Port: " + PORT);
+        System.out.println("Clock: " + (timeControl == null ? "none" : timeControl));
+        System.out.println("Idle games parked after: " + (parkIdleMillis > 0 ? parkIdleMillis / 1000 + " s" : "never"));
+        System.out.println("Heartbeat: " + (heartbeatMillis > 0 ? "every " + heartbeatMillis + " ms, dropped after " +
+                           heartbeatTimeoutMillis + " ms of silence" : "off"));
+        System.out.println("Admission: " + admission);
+        System.out.println("Message limits per connection: " + messageLimits);
+        System.out.println("Analysis: " + analysisPool);
+        System.out.println("Spectators: " + (spectatorPort > 0 ? "port " + spectatorPort : "off"));
         System.out.println("Waiting for players...");
         System.out.println("═══════════════════════════════════════");
-        
+
+        if (spectatorPort > 0) {
+            Thread spectatorAccept = new Thread(this::acceptSpectators, "spectator-accept");
+            spectatorAccept.setDaemon(true);
+            spectatorAccept.start();
+        }
+
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             while (true) {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("\n[+] New connection from: " + 
-                                 clientSocket.getInetAddress());
+                Socket clientSocket;
+                try {
+                    clientSocket = serverSocket.accept();
+                } catch (IOException e) {
+                    // Usually out of file descriptors; back off rather than spin or stop serving
+                    System.err.println("[SERVER] Accept failed: " + e.getMessage());
+                    sleepQuietly(ACCEPT_BACKOFF_MILLIS);
+                    continue;
+                }
+                trace("\n[+] New connection from: " + clientSocket.getInetAddress());
+                String refusal = admission.admit(clientSocket.getInetAddress());
+                if (refusal != null) {
+                    reject(clientSocket, refusal);
+                    continue;
+                }
+                tune(clientSocket);
                 
-                if (playerCount < 2) {
-                    PieceColor color = (playerCount == 0) ? 
-                                      PieceColor.WHITE : PieceColor.BLACK;
-                    ClientHandler handler = new ClientHandler(clientSocket, color, this);
-                    clients.add(handler);
-                    playerCount++;
-                    handler.start();
-                    
-                    System.out.println("Player assigned: " + color);
-                    
-                    if (playerCount == 2) {
+                if (waitingSession == null || waitingSession.isFinished()) {
+                    waitingSession = openSession();
+                }
+                ClientHandler handler = waitingSession.join(clientSocket);
+                if (handler == null) {
+                    // The waiting player left while this connection was accepted
+                    waitingSession = openSession();
+                    handler = waitingSession.join(clientSocket);
+                }
+                trace("Player assigned: " + handler.getPlayerColor() + " (session " + waitingSession.getId() + ")");
+
+                if (waitingSession.isFull()) {
+                    if (VERBOSE) {
                         System.out.println("\n═══════════════════════════════════════");
-                        System.out.println("GAME STARTED!  ");
-                        System.out.println("WHITE vs BLACK");
+                        System.out.println("GAME STARTED!  (session " + waitingSession.getId() + ")");
+                        System.out.println("WHITE vs BLACK - " + sessions.size() + " active sessions");
                         System.out.println("═══════════════════════════════════════\n");
                     }
-                } else {
-                    System.out.println("Game is full. Connection rejected.");
-                    clientSocket.close();
+                    featured = waitingSession;
+                    waitingSession = null;
                 }
+                handler.start();
             }
         } catch (IOException e) {
             System.err.println("Server error: " + e.getMessage());
@@ -63,80 +268,152 @@ public class ChessServer {
         }
     }
 
-    public synchronized void handleClientMessage(ChessMessage message) {
-        if (message.getType() == MessageType.MOVE) {
-            System.out.println("[SERVER] MOVE REQUEST RECEIVED");
-            System.out.println("  From: (" + message.getFromRow() + "," + message.getFromCol() + ")");
-            System.out.println("  To: (" + message.getToRow() + "," + message.getToCol() + ")");
-            System.out.println("  Current turn: " + board.getCurrentTurn());
-            
-            PieceType promotionType = message.getPromotionType();
-            if (promotionType != null) {
-                System.out.println("  Promotion to: " + promotionType);
-            }
-            
-            boolean success = board.makeMove(
-                message.getFromRow(), message.getFromCol(),
-                message.getToRow(), message.getToCol(),
-                promotionType
-            );
-            
-            if (success) {
-                System.out.println("[SERVER] MOVE VALID - Move #" + board.getMoveCount());
-                System.out.println("[SERVER] New turn: " + board.getCurrentTurn());
-                
-                boolean whiteInCheck = board.isInCheck(PieceColor.WHITE);
-                boolean blackInCheck = board.isInCheck(PieceColor.BLACK);
-                
-                if (whiteInCheck) {
-                    System.out.println("[SERVER]  WHITE KING IS IN CHECK!");
-                }
-                if (blackInCheck) {
-                    System.out.println("[SERVER]  BLACK KING IS IN CHECK!");
+    /**
+     * Accepts spectators on their own port and seats each one in the featured game. Runs on
+     * its own thread, so a crowd arriving at once does not slow players' connections.
+     */
+    private void acceptSpectators() {
+        try (ServerSocket serverSocket = new ServerSocket(spectatorPort)) {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    System.err.println("[SERVER] Spectator accept failed: " + e.getMessage());
+                    sleepQuietly(ACCEPT_BACKOFF_MILLIS);
+                    continue;
                 }
-                
-                System.out.println("[SERVER] Broadcasting to " + clients.size() + " clients...");
-                
-                ChessMessage updateMsg = ChessMessage.createBoardUpdate(board);
-                broadcast(updateMsg);
-                
-                if (whiteInCheck) {
-                    broadcast(ChessMessage.createCheckNotification(PieceColor.WHITE));
+                GameSession game = featured;
+                if (game == null || game.isFinished()) {
+                    reject(socket, "no game in progress to watch");
+                    continue;
                 }
-                if (blackInCheck) {
-                    broadcast(ChessMessage.createCheckNotification(PieceColor.BLACK));
+                String refusal = admission.admit(socket.getInetAddress());
+                if (refusal != null) {
+                    reject(socket, refusal);
+                    continue;
                 }
-                
-                System.out.println("[SERVER] Broadcast complete\n");
-                
-                if (board.isGameOver()) {
-                    System.out.println("\n[GAME OVER] Winner: " + board.getWinner());
-                    broadcast(ChessMessage.createGameOver(board.getWinner()));
+                tune(socket);
+                ClientHandler handler = game.watch(socket);
+                if (handler == null) {
+                    // Not counted as open by the handler, so undo the admission here
+                    admission.handshakeFinished();
+                    admission.connectionClosed();
+                    reject(socket, "no game in progress to watch");
+                    continue;
                 }
-            } else {
-                System.out.println("[SERVER] INVALID MOVE - Rejected\n");
+                handler.start();
             }
+        } catch (IOException e) {
+            System.err.println("[SERVER] Spectator port " + spectatorPort + " unavailable: " + e.getMessage());
         }
     }
 
-    private synchronized void broadcast(ChessMessage message) {
-        System.out.println("[BROADCAST] Sending update to " + clients.size() + " clients");
-        for (ClientHandler client : clients) {
-            try {
-                client.sendMessage(message);
-                System.out.println("[BROADCAST] Sent to " + client.getPlayerColor());
-            } catch (Exception e) {
-                System.err.println("[BROADCAST ERROR] Failed to send to " + 
-                                 client.getPlayerColor() + ": " + e.getMessage());
-            }
+    private static void tune(Socket socket) {
+        try {
+            // Game messages can overtake queued chat but not bytes the kernel already holds,
+            // so keep that buffer small, and send each message as soon as it is written
+            socket.setSendBufferSize(SEND_BUFFER_BYTES);
+            socket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            System.err.println("[SERVER] Could not tune socket: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells a refused client why and closes it, all on the accept thread. The reply is small
+     * enough to fit the socket's send buffer, so writing it does not wait on the client.
+     */
+    private static void reject(Socket socket, String reason) {
+        try (Socket s = socket) {
+            ObjectOutputStream out = new ObjectOutputStream(s.getOutputStream());
+            out.writeObject(ChessMessage.createConnectionRejected(reason));
+            out.flush();
+            s.shutdownOutput();
+        } catch (IOException e) {
+            // The client is gone already
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public ChessBoard getBoard() {
-        return board;
+    private GameSession openSession() {
+        GameSession session = new GameSession(nextSessionId++, this);
+        sessions.add(session);
+        return session;
+    }
+
+    static void trace(String message) {
+        if (VERBOSE) {
+            System.out.println(message);
+        }
+    }
+
+    void sessionEnded(GameSession session) {
+        if (sessions.remove(session)) {
+            System.out.println("[SERVER] Session " + session.getId() + " closed, " +
+                               sessions.size() + " active sessions");
+        }
+    }
+
+    TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    TimerWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * Schedules session work on the timer wheel to run on the session-event threads. The wheel
+     * only hands the task over; it can take a session lock and end the game without holding
+     * up every other timer on the server.
+     */
+    TimerWheel.Timeout scheduleSessionEvent(Runnable task, long delayMillis) {
+        return timers.schedule(() -> sessionEvents.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    /** Idle time after which a session is parked off-heap; 0 disables parking. */
+    long getParkIdleMillis() {
+        return parkIdleMillis;
+    }
+
+    /** How often clients are asked to ping; 0 disables heartbeats. */
+    long getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    /** Silence after which a connection is taken for dead and closed. */
+    long getHeartbeatTimeoutMillis() {
+        return heartbeatTimeoutMillis;
+    }
+
+    MessageLimits getMessageLimits() {
+        return messageLimits;
+    }
+
+    AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    /** How long a new connection has to send its stream header. */
+    int getHandshakeTimeoutMillis() {
+        return handshakeTimeoutMillis;
+    }
+
+    AnalysisPool getAnalysisPool() {
+        return analysisPool;
     }
 
     public static void main(String[] args) {
+        ChessBoard.setLoggingEnabled(VERBOSE);
         new ChessServer().start();
     }
 }
\ No newline at end of file
@@ -2,66 +2,350 @@ package com.chess.server;
 
 import com.chess.model.PieceColor;
 import com.chess.network.ChessMessage;
+import com.chess.network.MessageType;
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * One connection. Its thread reads the client's messages and a writer thread of its own sends
+ * outgoing ones. Outgoing messages go through two lanes, game traffic and informational
+ * traffic (chat, analysis), and the writer always empties the game lane first. Callers only
+ * enqueue, so a slow reader holds up nothing but its own writer.
+ * <p>
+ * A handler without a colour is a spectator: it receives the game's updates and chat and
+ * may talk, but its moves are never played.
+ */
 public class ClientHandler extends Thread {
+    private static final int MAX_INFO_BACKLOG = 64;
+    // A reader this far behind on game traffic is not coming back; dropping it bounds the memory
+    private static final int MAX_GAME_BACKLOG = 256;
+    private static final int WRITER_STACK_BYTES = 256 * 1024;
+    // A message carries at most a chat line, but the first one also carries every class descriptor
+    private static final int MAX_MESSAGE_BYTES = 16 * 1024;
+    // Only message types may be read from a client. maxbytes and maxrefs count over the whole
+    // stream, so the size of each message is capped by BoundedInputStream instead
+    private static final ObjectInputFilter CLIENT_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxarray=256;maxdepth=8;com.chess.network.*;com.chess.model.*;java.lang.*;!*");
+    private static final AtomicInteger SPECTATORS = new AtomicInteger();
+
     private Socket socket;
     private ObjectOutputStream out;
     private ObjectInputStream in;
+    private BoundedInputStream limited;
     private PieceColor playerColor;
-    private ChessServer server;
+    private final String label;
+    private GameSession session;
+    private volatile boolean closed;
+    private volatile long lastHeardNanos = System.nanoTime();
+    private volatile TimerWheel.Timeout heartbeatCheck;
+    private boolean handshaking = true;
+    private final TokenBucket[] buckets;
+    private final long[] throttled = new long[MessageLimits.Kind.values().length];
+    private long refusedEarly;
+    // Outgoing lanes and closeRequested, guarded by lanes; the writer waits on it
+    private final Object lanes = new Object();
+    private final ArrayDeque<ChessMessage> gameLane = new ArrayDeque<>();
+    private final ArrayDeque<ChessMessage> infoLane = new ArrayDeque<>();
+    private long infoDropped;
+    private boolean closeRequested;
 
-    public ClientHandler(Socket socket, PieceColor color, ChessServer server) {
+    public ClientHandler(Socket socket, PieceColor color, GameSession session) {
         this.socket = socket;
         this.playerColor = color;
-        this.server = server;
+        this.label = color != null ? color.toString() : "SPECTATOR " + SPECTATORS.incrementAndGet();
+        this.session = session;
+        this.buckets = session.getServer().getMessageLimits().newBuckets();
     }
 
     @Override
     public void run() {
+        ChessServer server = session.getServer();
+        if (server.getHeartbeatMillis() > 0) {
+            // Armed before the handshake, so a peer that never sends its stream header is reaped too
+            scheduleHeartbeatCheck(server);
+        }
         try {
+            ChessMessage initialBoard = session.createBoardUpdate();
             out = new ObjectOutputStream(socket.getOutputStream());
             out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
 
-            System.out.println("[Handler " + playerColor + "] Streams initialized");
+            // Assign player color and send the initial board before any broadcast gets in
+            ChessMessage assignment = ChessMessage.createPlayerAssignment(playerColor);
+            assignment.setHeartbeatMillis(server.getHeartbeatMillis());
+            write(assignment);
+            write(initialBoard);
+            ChessMessage history = session.getChat().subscribe(this);
+            if (history != null) {
+                write(history);
+            }
+            // Anything broadcast meanwhile has been queued behind these
+            Thread writer = new Thread(null, this::writeLoop, "writer-" + label, WRITER_STACK_BYTES);
+            writer.setDaemon(true);
+            writer.start();
+            // A client that never sends its header would otherwise hold a handshake slot
+            socket.setSoTimeout(server.getHandshakeTimeoutMillis());
+            limited = new BoundedInputStream(socket.getInputStream(), MAX_MESSAGE_BYTES);
+            in = new ObjectInputStream(limited);
+            in.setObjectInputFilter(CLIENT_FILTER);
+            socket.setSoTimeout(0);
+            finishHandshake(server);
 
-            // Assign player color
-            sendMessage(ChessMessage.createPlayerAssignment(playerColor));
-            
-            // Send initial board state
-            sendMessage(ChessMessage.createBoardUpdate(server.getBoard()));
+            ChessServer.trace("[Handler " + label + "] Streams initialized");
 
             // Listen for messages from client
             while (true) {
+                limited.startMessage();
                 ChessMessage message = (ChessMessage) in.readObject();
-                System.out.println("[Handler " + playerColor + "] Received message: " + message.getType());
-                server.handleClientMessage(message);
+                long receivedNanos = System.nanoTime();
+                lastHeardNanos = receivedNanos;
+                if (!withinLimit(server.getMessageLimits(), message, receivedNanos)) {
+                    continue;
+                }
+                if (message.getType() == MessageType.PING) {
+                    // Answered here so a heartbeat never wakes a parked session
+                    sendMessage(ChessMessage.createPong());
+                    continue;
+                }
+                ChessServer.trace("[Handler " + label + "] Received message: " + message.getType());
+                if (message.getType() == MessageType.CHAT) {
+                    // Chat has its own lock and never touches the board
+                    session.getChat().post(label, message.getChatMessage());
+                    continue;
+                }
+                if (session.refuseWithoutLock(this, message)) {
+                    refusedEarly++;
+                    server.getMessageLimits().refusedEarly();
+                    continue;
+                }
+                session.handleClientMessage(this, message);
             }
         } catch (EOFException e) {
-            System.out.println("[Handler " + playerColor + "] Player disconnected normally");
+            ChessServer.trace("[Handler " + label + "] Player disconnected normally");
+        } catch (SocketTimeoutException e) {
+            // Only the handshake reads have a timeout
+            System.out.println("[Handler " + label + "] No stream header within " +
+                               session.getServer().getHandshakeTimeoutMillis() + " ms, closing");
+        } catch (ObjectStreamException | ClassCastException e) {
+            // Filtered, oversized or not a message at all; nothing after it can be trusted
+            System.out.println("[Handler " + label + "] Rejected client data, closing: " + e.getMessage());
         } catch (Exception e) {
-            System.out.println("[Handler " + playerColor + "] Error: " + e.getMessage());
-            e.printStackTrace();
+            if (closed) {
+                ChessServer.trace("[Handler " + label + "] Connection closed by server");
+            } else {
+                System.out.println("[Handler " + label + "] Error: " + e.getMessage());
+                e.printStackTrace();
+            }
         } finally {
+            // Also stops a heartbeat check that is rescheduling itself right now, and the writer
+            stopWriting();
+            TimerWheel.Timeout check = heartbeatCheck;
+            if (check != null) {
+                check.cancel();
+            }
+            session.removeClient(this);
             try {
                 socket.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            finishHandshake(server);
+            server.getAdmission().connectionClosed();
+            reportThrottling(server.getMessageLimits());
+        }
+    }
+
+    /**
+     * Runs on the server's timer wheel. A peer silent for the heartbeat timeout is taken for
+     * dead: closing the socket fails the blocked read (or a write stuck on a full buffer), and
+     * the handler then leaves its session like any other disconnect.
+     */
+    private void checkHeartbeat(ChessServer server) {
+        if (closed) {
+            return;
+        }
+        long silentMillis = (System.nanoTime() - lastHeardNanos) / 1_000_000;
+        if (silentMillis >= server.getHeartbeatTimeoutMillis()) {
+            System.out.println("[Handler " + label + "] No heartbeat for " + silentMillis + " ms, closing");
+            close();
+            return;
+        }
+        scheduleHeartbeatCheck(server);
+    }
+
+    /**
+     * Takes a token for the message's kind. A throttled move is answered with MOVE_REJECTED,
+     * since the client is already showing it; anything else throttled is dropped silently.
+     */
+    private boolean withinLimit(MessageLimits limits, ChessMessage message, long nowNanos) {
+        MessageLimits.Kind kind = MessageLimits.kindOf(message.getType());
+        TokenBucket bucket = buckets[kind.ordinal()];
+        if (bucket == null || bucket.tryTake(nowNanos)) {
+            return true;
+        }
+        limits.throttled(kind);
+        if (throttled[kind.ordinal()]++ == 0) {
+            System.out.println("[Handler " + label + "] Throttling " + kind + " messages");
+        }
+        if (message.getType() == MessageType.MOVE) {
+            sendMessage(ChessMessage.createMoveRejected(message.getMoveSequence(), session.getSnapshot()));
         }
+        return false;
     }
 
-    public synchronized void sendMessage(ChessMessage message) {
+    private void reportThrottling(MessageLimits limits) {
+        long total = refusedEarly;
+        StringBuilder sb = new StringBuilder();
+        for (MessageLimits.Kind kind : MessageLimits.Kind.values()) {
+            total += throttled[kind.ordinal()];
+            if (throttled[kind.ordinal()] > 0) {
+                sb.append(", ").append(kind).append(' ').append(throttled[kind.ordinal()]);
+            }
+        }
+        if (total > 0) {
+            System.out.println("[Handler " + label + "] Closed; throttled" + (sb.length() == 0 ? " none" : sb.substring(1)) +
+                               ", " + refusedEarly + " moves refused before the lock (server " + limits.totals() + ")");
+        }
+    }
+
+    private void finishHandshake(ChessServer server) {
+        if (handshaking) {
+            handshaking = false;
+            server.getAdmission().handshakeFinished();
+        }
+    }
+
+    private void scheduleHeartbeatCheck(ChessServer server) {
+        // Never writes, so a write stuck on a dead peer cannot hold up the wheel
+        heartbeatCheck = server.getTimers().schedule(() -> checkHeartbeat(server),
+                                                     server.getHeartbeatMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a message in its lane for the writer thread and returns at once. A connection
+     * whose game lane is hopelessly backed up is closed instead.
+     */
+    public void sendMessage(ChessMessage message) {
+        boolean overflow = false;
+        synchronized (lanes) {
+            if (closed) {
+                return;
+            }
+            if (isInformational(message.getType())) {
+                queueInfo(message);
+            } else {
+                if (message.getType() == MessageType.MOVE_REJECTED) {
+                    // The client only waits on its latest move, and a flood must not grow the lane
+                    gameLane.removeIf(queued -> queued.getType() == MessageType.MOVE_REJECTED);
+                }
+                overflow = gameLane.size() >= MAX_GAME_BACKLOG;
+                if (!overflow) {
+                    gameLane.add(message);
+                }
+            }
+            lanes.notify();
+        }
+        if (overflow) {
+            System.out.println("[Handler " + label + "] " + MAX_GAME_BACKLOG + " game messages unsent, closing");
+            close();
+        }
+    }
+
+    private static boolean isInformational(MessageType type) {
+        return type == MessageType.CHAT || type == MessageType.ANALYSIS_UPDATE;
+    }
+
+    /**
+     * Only the newest analysis is worth sending, so a queued one is replaced. Past the backlog
+     * limit the oldest informational message is dropped; a slow reader must not pin memory.
+     */
+    private void queueInfo(ChessMessage message) {
+        if (message.getType() == MessageType.ANALYSIS_UPDATE) {
+            infoLane.removeIf(queued -> queued.getType() == MessageType.ANALYSIS_UPDATE);
+        }
+        if (infoLane.size() >= MAX_INFO_BACKLOG) {
+            infoLane.poll();
+            if (infoDropped++ == 0) {
+                System.out.println("[Handler " + label + "] Informational backlog full, dropping oldest");
+            }
+        }
+        infoLane.add(message);
+    }
+
+    /** The writer thread: sends queued messages until the connection closes or asks to. */
+    private void writeLoop() {
         try {
-            System.out.println("[Handler " + playerColor + "] Sending message: " + message.getType());
-            out.reset(); // CRITICAL: Clear cache
-            out.writeObject(message);
-            out.flush();
-            System.out.println("[Handler " + playerColor + "] Message sent successfully");
+            ChessMessage next;
+            while ((next = awaitNext()) != null) {
+                write(next);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("[Handler " + label + "] ERROR sending: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            // Nothing interrupts the writer; closing is how it is stopped
+        }
+        close();
+    }
+
+    /**
+     * Waits for the next message, game lane first. Returns null once the connection is closed,
+     * or once both lanes are empty after closeWhenFlushed.
+     */
+    private ChessMessage awaitNext() throws InterruptedException {
+        synchronized (lanes) {
+            while (!closed) {
+                ChessMessage next = gameLane.poll();
+                if (next == null) {
+                    next = infoLane.poll();
+                }
+                if (next != null || closeRequested) {
+                    return next;
+                }
+                lanes.wait();
+            }
+            return null;
+        }
+    }
+
+    private void write(ChessMessage message) throws IOException {
+        ChessServer.trace("[Handler " + label + "] Sending message: " + message.getType());
+        out.reset(); // CRITICAL: Clear cache
+        out.writeObject(message);
+        out.flush();
+        ChessServer.trace("[Handler " + label + "] Message sent successfully");
+    }
+
+    /**
+     * Closes the connection once everything already queued has been written; used for the
+     * last messages of a game, which a plain close could cut off.
+     */
+    public void closeWhenFlushed() {
+        synchronized (lanes) {
+            closeRequested = true;
+            lanes.notify();
+        }
+    }
+
+    private void stopWriting() {
+        synchronized (lanes) {
+            closed = true;
+            gameLane.clear();
+            infoLane.clear();
+            lanes.notify();
+        }
+    }
+
+    /** Closes the connection; the handler thread ends once its pending read fails. */
+    public void close() {
+        stopWriting();
+        try {
+            socket.close();
         } catch (IOException e) {
-            System.err.println("[Handler " + playerColor + "] ERROR sending: " + e.getMessage());
             e.printStackTrace();
         }
     }
@@ -69,4 +353,8 @@ public class ClientHandler extends Thread {
     public PieceColor getPlayerColor() {
         return playerColor;
     }
+
+    public boolean isSpectator() {
+        return playerColor == null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,570 @@
+package com.chess.server;
+
+import com.chess.engine.Position;
+import com.chess.model.BoardSnapshot;
+import com.chess.model.ChessBoard;
+import com.chess.model.ChessPiece;
+import com.chess.model.GameOverReason;
+import com.chess.model.Move;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+import com.chess.network.ChessMessage;
+import com.chess.network.MessageType;
+import com.chess.pgn.PgnGame;
+import com.chess.pgn.San;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * One game between two connections. A session owns its board and its players' handler
+ * threads, and borrows the server's analysis threads; when the game ends all of them are
+ * released and the session is dropped by the server.
+ * <p>
+ * A session with no messages for the server's idle window is parked: its live board and move
+ * list are dropped from the heap until the next access. The published snapshot already holds
+ * the board's packed image and is rebuilt from. The move list exists only when games are
+ * archived, and is spilled to a file in the archive directory.
+ * <p>
+ * Any number of spectators may watch. They get every update the players get; each connection
+ * has its own writer, so broadcasting only queues and a large audience costs the session lock
+ * one enqueue per spectator.
+ */
+public class GameSession {
+    private final long id;
+    private final ChessServer server;
+    private ChessBoard board = new ChessBoard();
+    // Republished after every change; readers never touch the live board
+    private volatile BoardSnapshot snapshot = board.snapshot();
+    // Copy-on-write so chat and spectator fan-out can iterate without the session lock
+    private final List<ClientHandler> players = new CopyOnWriteArrayList<>();
+    private final Set<ClientHandler> spectators = new CopyOnWriteArraySet<>();
+    private final ChatRoom chat;
+    private final Set<ClientHandler> analysisSubscribers = new CopyOnWriteArraySet<>();
+    private final LocalDate date = LocalDate.now();
+    // SAN moves separated by spaces, kept only when the server archives games
+    private StringBuilder movetext = new StringBuilder();
+    // The parked move list, or null if there were no moves when the session was parked
+    private Path parkedMoves;
+    private long lastActivityNanos = System.nanoTime();
+    private TimerWheel.Timeout parkTimeout;
+    private AnalysisService analysisService;
+    private boolean finished;
+    private final TimeControl timeControl;
+    private final long[] remainingMillis = new long[2];
+    private long turnStartedNanos;
+    private TimerWheel.Timeout flagTimeout;
+    // Bumped by every armFlag, so only the latest flag timer acts
+    private long flagGeneration;
+    // Each colour's queued premove, indexed by ordinal
+    private final ChessMessage[] premoves = new ChessMessage[2];
+
+    GameSession(long id, ChessServer server) {
+        this.id = id;
+        this.server = server;
+        chat = new ChatRoom(server);
+        timeControl = server.getTimeControl();
+        if (timeControl != null) {
+            remainingMillis[0] = remainingMillis[1] = timeControl.getBaseMillis();
+        }
+        scheduleParking(server.getParkIdleMillis());
+    }
+
+    /**
+     * Seats a new connection as the next colour. Returns null if the session has already
+     * finished (for example because the waiting player left).
+     */
+    synchronized ClientHandler join(Socket socket) {
+        if (finished || players.size() == 2) {
+            return null;
+        }
+        PieceColor color = players.isEmpty() ? PieceColor.WHITE : PieceColor.BLACK;
+        ClientHandler handler = new ClientHandler(socket, color, this);
+        players.add(handler);
+        lastActivityNanos = System.nanoTime();
+        if (players.size() == 2 && timeControl != null) {
+            turnStartedNanos = System.nanoTime();
+            armFlag();
+            // White's clock is running now; White's last board update showed it stopped
+            players.get(0).sendMessage(createBoardUpdate());
+        }
+        return handler;
+    }
+
+    /** Adds a spectator. Returns null if the game has already finished. */
+    synchronized ClientHandler watch(Socket socket) {
+        if (finished) {
+            return null;
+        }
+        ClientHandler handler = new ClientHandler(socket, null, this);
+        spectators.add(handler);
+        System.out.println("[SESSION " + id + "] Spectator joined, " + spectators.size() + " watching");
+        return handler;
+    }
+
+    synchronized boolean isFull() {
+        return players.size() == 2;
+    }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    ChessServer getServer() {
+        return server;
+    }
+
+    ChatRoom getChat() {
+        return chat;
+    }
+
+    /** Players and spectators; a snapshot that is safe to iterate without the lock. */
+    List<ClientHandler> getAudience() {
+        List<ClientHandler> audience = new ArrayList<>(players.size() + spectators.size());
+        audience.addAll(players);
+        audience.addAll(spectators);
+        return audience;
+    }
+
+    /** The latest position; lock-free, and does not wake a parked session. */
+    public BoardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** The current position, with both players' remaining time once a timed game has started. */
+    public synchronized ChessMessage createBoardUpdate() {
+        ChessMessage message = ChessMessage.createBoardUpdate(snapshot);
+        if (timeControl != null && players.size() == 2) {
+            message.setClocks(Math.max(0, timeLeft(PieceColor.WHITE)), Math.max(0, timeLeft(PieceColor.BLACK)));
+        }
+        return message;
+    }
+
+    /**
+     * Refuses moves that cannot succeed before the session lock is taken: squares off the
+     * board, or a move when it is not the sender's turn or from a square without one of their
+     * pieces. Reads only the published snapshot, so a flood of them costs the sender's thread
+     * and not the game's. Returns true if the message was refused.
+     */
+    boolean refuseWithoutLock(ClientHandler sender, ChessMessage message) {
+        MessageType type = message.getType();
+        if ((type != MessageType.MOVE && type != MessageType.PREMOVE) || message.isPremoveCancel()) {
+            return false;
+        }
+        BoardSnapshot current = snapshot;
+        boolean plausible = onBoard(message.getFromRow(), message.getFromCol()) &&
+                            onBoard(message.getToRow(), message.getToCol()) &&
+                            (message.getFromRow() != message.getToRow() || message.getFromCol() != message.getToCol());
+        if (plausible) {
+            ChessPiece piece = current.getPiece(message.getFromRow(), message.getFromCol());
+            plausible = piece != null && piece.getColor() == sender.getPlayerColor() &&
+                        (type == MessageType.PREMOVE || current.getCurrentTurn() == sender.getPlayerColor());
+        }
+        if (plausible) {
+            return false;
+        }
+        ChessServer.trace("[SERVER] MOVE REFUSED before the lock from " + sender.getPlayerColor());
+        if (type == MessageType.MOVE) {
+            sender.sendMessage(ChessMessage.createMoveRejected(message.getMoveSequence(), current));
+        }
+        return true;
+    }
+
+    private static boolean onBoard(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8;
+    }
+
+    public synchronized void handleClientMessage(ClientHandler sender, ChessMessage message) {
+        if (finished) {
+            return;
+        }
+        if (sender.isSpectator() && message.getType() != MessageType.ANALYSIS_REQUEST) {
+            return;
+        }
+        lastActivityNanos = System.nanoTime();
+        if (message.getType() == MessageType.ANALYSIS_REQUEST) {
+            if (message.isAnalysisEnabled()) {
+                analysisSubscribers.add(sender);
+                System.out.println("[SESSION " + id + "] Analysis enabled for " + sender.getPlayerColor());
+                restartAnalysis();
+            } else {
+                analysisSubscribers.remove(sender);
+                System.out.println("[SESSION " + id + "] Analysis disabled for " + sender.getPlayerColor());
+                if (analysisSubscribers.isEmpty() && analysisService != null) {
+                    analysisService.cancel();
+                }
+            }
+            return;
+        }
+        if (message.getType() == MessageType.PREMOVE) {
+            queuePremove(sender, message);
+            return;
+        }
+        if (message.getType() == MessageType.MOVE) {
+            ChessServer.trace("[SERVER] MOVE REQUEST RECEIVED");
+            ChessServer.trace("  From: (" + message.getFromRow() + "," + message.getFromCol() + ")");
+            ChessServer.trace("  To: (" + message.getToRow() + "," + message.getToCol() + ")");
+            ChessServer.trace("  Current turn: " + board().getCurrentTurn());
+
+            if (sender.getPlayerColor() != board().getCurrentTurn() || players.size() < 2) {
+                ChessServer.trace("[SERVER] INVALID MOVE - Not " + sender.getPlayerColor() + "'s turn\n");
+                sender.sendMessage(ChessMessage.createMoveRejected(message.getMoveSequence(), snapshot));
+                return;
+            }
+            if (!playTurn(sender.getPlayerColor(), message) && !finished) {
+                // The client has already shown the move; this lets it roll back
+                sender.sendMessage(ChessMessage.createMoveRejected(message.getMoveSequence(), snapshot));
+            }
+        }
+    }
+
+    /**
+     * Holds a player's move for the opponent's turn, replacing any earlier one. A premove that
+     * arrives after the opponent has already moved is simply played.
+     */
+    private void queuePremove(ClientHandler sender, ChessMessage message) {
+        PieceColor color = sender.getPlayerColor();
+        if (message.isPremoveCancel()) {
+            premoves[color.ordinal()] = null;
+            ChessServer.trace("[SERVER] Premove cancelled by " + color);
+        } else if (players.size() < 2) {
+            ChessServer.trace("[SERVER] PREMOVE IGNORED - No opponent yet\n");
+        } else if (color == board().getCurrentTurn()) {
+            premoves[color.ordinal()] = null;
+            playTurn(color, message);
+        } else {
+            premoves[color.ordinal()] = message;
+            ChessServer.trace("[SERVER] Premove queued for " + color + ": (" + message.getFromRow() + "," +
+                              message.getFromCol() + ") -> (" + message.getToRow() + "," + message.getToCol() + ")");
+        }
+    }
+
+    /**
+     * Plays the mover's move and then the opponent's premove, if one is queued and still legal,
+     * and publishes the result as one board update. Returns false if the mover's move was not
+     * played.
+     */
+    private boolean playTurn(PieceColor mover, ChessMessage message) {
+        if (!applyMove(mover, message)) {
+            return false;
+        }
+        PieceColor next = board().getCurrentTurn();
+        ChessMessage premove = premoves[next.ordinal()];
+        premoves[next.ordinal()] = null;
+        // A flagged premover loses on the flag timer rather than here, so the move above still goes out
+        if (premove != null && !board().isGameOver() && (flagTimeout == null || timeLeft(next) > 0)) {
+            if (applyMove(next, premove)) {
+                ChessServer.trace("[SERVER] Premove played for " + next);
+            } else {
+                ChessServer.trace("[SERVER] Premove dropped for " + next);
+            }
+        }
+
+        boolean whiteInCheck = board().isInCheck(PieceColor.WHITE);
+        boolean blackInCheck = board().isInCheck(PieceColor.BLACK);
+
+        if (whiteInCheck) {
+            ChessServer.trace("[SERVER]  WHITE KING IS IN CHECK!");
+        }
+        if (blackInCheck) {
+            ChessServer.trace("[SERVER]  BLACK KING IS IN CHECK!");
+        }
+
+        ChessServer.trace("[SERVER] Broadcasting to " + players.size() + " clients...");
+
+        ChessMessage updateMsg = createBoardUpdate();
+        // The opponent ignores the echo; it only matches the mover's own timestamp
+        updateMsg.setEcho(message.getSentNanos(), System.nanoTime() - lastActivityNanos);
+        updateMsg.setMoveSequence(message.getMoveSequence());
+        broadcast(updateMsg);
+
+        if (whiteInCheck) {
+            broadcast(ChessMessage.createCheckNotification(PieceColor.WHITE));
+        }
+        if (blackInCheck) {
+            broadcast(ChessMessage.createCheckNotification(PieceColor.BLACK));
+        }
+
+        ChessServer.trace("[SERVER] Broadcast complete\n");
+
+        if (board().isGameOver()) {
+            finish();
+        } else {
+            restartAnalysis();
+        }
+        return true;
+    }
+
+    /**
+     * Makes one move for the side to move and runs its clock. Returns false, leaving the
+     * position unchanged, if the move is illegal or the mover's flag had already fallen.
+     */
+    private boolean applyMove(PieceColor mover, ChessMessage message) {
+        long moverTimeLeft = timeLeft(mover);
+        if (flagTimeout != null && moverTimeLeft <= 0) {
+            ChessServer.trace("[SERVER] INVALID MOVE - " + mover + " is out of time\n");
+            flagFall(mover);
+            return false;
+        }
+
+        PieceType promotionType = message.getPromotionType();
+        if (promotionType != null) {
+            ChessServer.trace("  Promotion to: " + promotionType);
+        }
+
+        String san = null;
+        if (server.isArchiving() && board().isValidMove(message.getFromRow(), message.getFromCol(),
+                                                      message.getToRow(), message.getToCol())) {
+            san = San.toSan(board, Move.encode(message.getFromRow(), message.getFromCol(),
+                                               message.getToRow(), message.getToCol(), promotionType));
+        }
+
+        boolean success = board().makeMove(
+            message.getFromRow(), message.getFromCol(),
+            message.getToRow(), message.getToCol(),
+            promotionType
+        );
+        if (!success) {
+            ChessServer.trace("[SERVER] INVALID MOVE - Rejected\n");
+            return false;
+        }
+
+        snapshot = board().snapshot();
+        if (analysisService != null) {
+            analysisService.cancel();
+        }
+        if (san != null) {
+            movetext.append(movetext.length() == 0 ? "" : " ").append(san);
+        }
+        if (flagTimeout != null) {
+            flagTimeout.cancel();
+            remainingMillis[mover.ordinal()] = moverTimeLeft + timeControl.getIncrementMillis();
+            turnStartedNanos = System.nanoTime();
+            armFlag();
+        }
+        ChessServer.trace("[SERVER] MOVE VALID - Move #" + board().getMoveCount());
+        ChessServer.trace("[SERVER] New turn: " + board().getCurrentTurn());
+        return true;
+    }
+
+    /**
+     * Broadcasts the result, archives the game and releases the session's threads. Every
+     * connection is closed once the result has been written, which ends its handler thread.
+     */
+    private void finish() {
+        finished = true;
+        if (flagTimeout != null) {
+            flagTimeout.cancel();
+            flagTimeout = null;
+        }
+        PieceColor winner = snapshot.getWinner();
+        GameOverReason reason = snapshot.getGameOverReason();
+        System.out.println("\n[GAME OVER] Session " + id + ": " +
+                           (winner == null ? "draw" : "winner " + winner) + " by " + reason);
+        broadcast(ChessMessage.createGameOver(winner, reason));
+
+        if (reason != GameOverReason.ABANDONED && movetext.length() > 0) {
+            server.archiveGame(createRecord(winner));
+        }
+        if (parkTimeout != null) {
+            parkTimeout.cancel();
+            parkTimeout = null;
+        }
+        if (analysisService != null) {
+            analysisService.shutdown();
+            analysisService = null;
+        }
+        analysisSubscribers.clear();
+        for (ClientHandler client : getAudience()) {
+            client.closeWhenFlushed();
+        }
+        server.sessionEnded(this);
+    }
+
+    private PgnGame createRecord(PieceColor winner) {
+        PgnGame record = new PgnGame();
+        record.setTag("Event", "Network game");
+        record.setTag("Round", String.valueOf(id));
+        record.setTag("Date", date.format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        record.setTag("White", "WHITE");
+        record.setTag("Black", "BLACK");
+        if (timeControl != null) {
+            record.setTag("TimeControl", timeControl.toString());
+        }
+        for (String san : movetext.toString().split(" ")) {
+            record.addMove(san);
+        }
+        record.setResult(winner == null ? "1/2-1/2" : winner == PieceColor.WHITE ? "1-0" : "0-1");
+        return record;
+    }
+
+    /** The live board, rehydrating a parked session first. */
+    private ChessBoard board() {
+        if (board == null) {
+            board = snapshot.toBoard();
+            movetext = new StringBuilder();
+            if (parkedMoves != null) {
+                try {
+                    movetext.append(Files.readString(parkedMoves, StandardCharsets.UTF_8));
+                    Files.delete(parkedMoves);
+                } catch (IOException e) {
+                    // Without its moves the game can no longer be archived, but play goes on
+                    System.err.println("[SESSION " + id + "] Lost parked moves: " + e.getMessage());
+                    movetext.setLength(0);
+                }
+                parkedMoves = null;
+            }
+            System.out.println("[SESSION " + id + "] Rehydrated");
+            scheduleParking(server.getParkIdleMillis());
+        }
+        return board;
+    }
+
+    private void scheduleParking(long delayMillis) {
+        if (server.getParkIdleMillis() > 0) {
+            parkTimeout = server.scheduleSessionEvent(this::onParkTimeout, delayMillis);
+        }
+    }
+
+    private synchronized void onParkTimeout() {
+        if (finished || board == null) {
+            return;
+        }
+        long idleMillis = (System.nanoTime() - lastActivityNanos) / 1_000_000;
+        if (idleMillis < server.getParkIdleMillis()) {
+            // Activity since the timer was armed; check again when the window would end
+            scheduleParking(server.getParkIdleMillis() - idleMillis);
+            return;
+        }
+        parkTimeout = null;
+        if (movetext.length() > 0) {
+            Path directory = server.getParkDirectory();
+            if (directory == null) {
+                return;
+            }
+            try {
+                parkedMoves = Files.writeString(directory.resolve("session-" + id + ".san"), movetext,
+                                                StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("[SESSION " + id + "] Not parked, could not save moves: " + e.getMessage());
+                return;
+            }
+        }
+        // The snapshot is always the live board's latest state, so the board itself can go
+        board = null;
+        movetext = null;
+        System.out.println("[SESSION " + id + "] Parked after " + idleMillis / 1000 + " s idle" +
+                           (parkedMoves == null ? "" : ", moves in " + parkedMoves.getFileName()));
+    }
+
+    private long timeLeft(PieceColor color) {
+        long left = remainingMillis[color.ordinal()];
+        if (flagTimeout != null && color == snapshot.getCurrentTurn()) {
+            left -= (System.nanoTime() - turnStartedNanos) / 1_000_000;
+        }
+        return left;
+    }
+
+    /** Starts the flag timer for the side to move; turnStartedNanos must already be set. */
+    private void armFlag() {
+        PieceColor side = snapshot.getCurrentTurn();
+        long delay = remainingMillis[side.ordinal()] - (System.nanoTime() - turnStartedNanos) / 1_000_000;
+        long armed = ++flagGeneration;
+        flagTimeout = server.scheduleSessionEvent(() -> onFlagTimeout(side, armed), delay);
+    }
+
+    private synchronized void onFlagTimeout(PieceColor side, long armed) {
+        // A timer that fired just before a move rearmed the flag is stale
+        if (finished || flagTimeout == null || armed != flagGeneration || side != snapshot.getCurrentTurn()) {
+            return;
+        }
+        if (timeLeft(side) > 0) {
+            armFlag();
+            return;
+        }
+        flagFall(side);
+    }
+
+    private void flagFall(PieceColor side) {
+        flagTimeout.cancel();
+        flagTimeout = null;
+        remainingMillis[side.ordinal()] = 0;
+        board().endGame(side == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE, GameOverReason.TIMEOUT);
+        snapshot = board.snapshot();
+        finish();
+    }
+
+    private void restartAnalysis() {
+        if (analysisSubscribers.isEmpty() || snapshot.isGameOver()) {
+            return;
+        }
+        if (analysisService == null) {
+            analysisService = new AnalysisService(server.getAnalysisPool(), this::sendAnalysis);
+        }
+        analysisService.start(Position.fromSnapshot(snapshot));
+    }
+
+    private void sendAnalysis(ChessMessage message) {
+        for (ClientHandler client : analysisSubscribers) {
+            client.sendMessage(message);
+        }
+    }
+
+    /** Called when a connection ends. A player leaving a running game forfeits it. */
+    public synchronized void removeClient(ClientHandler client) {
+        chat.unsubscribe(client);
+        analysisSubscribers.remove(client);
+        if (analysisSubscribers.isEmpty() && analysisService != null) {
+            analysisService.cancel();
+        }
+        if (client.isSpectator()) {
+            spectators.remove(client);
+            return;
+        }
+        if (finished) {
+            return;
+        }
+        if (players.size() < 2) {
+            finished = true;
+            if (parkTimeout != null) {
+                parkTimeout.cancel();
+            }
+            server.sessionEnded(this);
+            return;
+        }
+        PieceColor leaver = client.getPlayerColor();
+        client.close();
+        board().endGame(leaver == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE, GameOverReason.ABANDONED);
+        snapshot = board.snapshot();
+        finish();
+    }
+
+    private void broadcast(ChessMessage message) {
+        ChessServer.trace("[BROADCAST] Sending update to " + players.size() + " clients");
+        for (ClientHandler client : players) {
+            try {
+                client.sendMessage(message);
+                ChessServer.trace("[BROADCAST] Sent to " + client.getPlayerColor());
+            } catch (Exception e) {
+                System.err.println("[BROADCAST ERROR] Failed to send to " +
+                                 client.getPlayerColor() + ": " + e.getMessage());
+            }
+        }
+        for (ClientHandler spectator : spectators) {
+            spectator.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.chess.server;
+
+import com.chess.network.MessageType;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection rate limits for each kind of client message. Each limit is read from a
+ * system property written as "rate/burst" in messages per second, for example
+ * -Dchess.limit.move=10/20; "0" turns that limit off. Throttled and early-refused messages
+ * are counted server-wide.
+ */
+class MessageLimits {
+    enum Kind {
+        MOVE("chess.limit.move", "10/20"),
+        CHAT("chess.limit.chat", "2/5"),
+        CONTROL("chess.limit.control", "5/10");
+
+        private final String property;
+        private final String defaultLimit;
+
+        Kind(String property, String defaultLimit) {
+            this.property = property;
+            this.defaultLimit = defaultLimit;
+        }
+    }
+
+    private final double[] rates = new double[Kind.values().length];
+    private final int[] bursts = new int[Kind.values().length];
+    private final LongAdder[] throttled = new LongAdder[Kind.values().length];
+    private final LongAdder refusedEarly = new LongAdder();
+
+    MessageLimits() {
+        for (Kind kind : Kind.values()) {
+            String text = System.getProperty(kind.property, kind.defaultLimit);
+            try {
+                String[] parts = text.trim().split("/");
+                rates[kind.ordinal()] = Double.parseDouble(parts[0]);
+                bursts[kind.ordinal()] = parts.length > 1 ? Integer.parseInt(parts[1]) :
+                                         (int) Math.max(1, Math.ceil(rates[kind.ordinal()]));
+            } catch (NumberFormatException e) {
+                System.err.println("[SERVER] Invalid " + kind.property + " '" + text + "', no limit");
+                rates[kind.ordinal()] = 0;
+            }
+            throttled[kind.ordinal()] = new LongAdder();
+        }
+    }
+
+    static Kind kindOf(MessageType type) {
+        switch (type) {
+            case MOVE:
+            case PREMOVE:
+                return Kind.MOVE;
+            case CHAT:
+                return Kind.CHAT;
+            default:
+                return Kind.CONTROL;
+        }
+    }
+
+    /** Fresh buckets for one connection, indexed by kind; null where a kind is unlimited. */
+    TokenBucket[] newBuckets() {
+        TokenBucket[] buckets = new TokenBucket[Kind.values().length];
+        for (Kind kind : Kind.values()) {
+            if (rates[kind.ordinal()] > 0) {
+                buckets[kind.ordinal()] = new TokenBucket(rates[kind.ordinal()], Math.max(1, bursts[kind.ordinal()]));
+            }
+        }
+        return buckets;
+    }
+
+    void throttled(Kind kind) {
+        throttled[kind.ordinal()].increment();
+    }
+
+    void refusedEarly() {
+        refusedEarly.increment();
+    }
+
+    /** Server-wide counts so far, for log lines. */
+    String totals() {
+        StringBuilder sb = new StringBuilder("throttled");
+        for (Kind kind : Kind.values()) {
+            sb.append(' ').append(kind.name().toLowerCase()).append(' ').append(throttled[kind.ordinal()].sum());
+        }
+        return sb.append(", refused before the lock ").append(refusedEarly.sum()).toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Kind kind : Kind.values()) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(kind.name().toLowerCase()).append(' ');
+            sb.append(rates[kind.ordinal()] > 0 ? rates[kind.ordinal()] + "/s (burst " + bursts[kind.ordinal()] + ")" : "unlimited");
+        }
+        return sb.toString();
+    }
+}
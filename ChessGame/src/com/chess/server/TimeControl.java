@@ -0,0 +1,43 @@
+package com.chess.server;
+
+/** Base time plus a per-move increment, written as in the PGN TimeControl tag ("300+5"). */
+public class TimeControl {
+    private final long baseMillis;
+    private final long incrementMillis;
+
+    public TimeControl(long baseMillis, long incrementMillis) {
+        if (baseMillis <= 0 || incrementMillis < 0) {
+            throw new IllegalArgumentException("Invalid time control: " + baseMillis + "+" + incrementMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+    }
+
+    /** Parses "seconds" or "seconds+increment". */
+    public static TimeControl parse(String text) {
+        String[] parts = text.trim().split("\\+");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Invalid time control: " + text);
+        }
+        try {
+            long base = Math.round(Double.parseDouble(parts[0]) * 1000);
+            long increment = parts.length > 1 ? Math.round(Double.parseDouble(parts[1]) * 1000) : 0;
+            return new TimeControl(base, increment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time control: " + text);
+        }
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    @Override
+    public String toString() {
+        return baseMillis / 1000 + (incrementMillis > 0 ? "+" + incrementMillis / 1000 : "");
+    }
+}
@@ -0,0 +1,183 @@
+package com.chess.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel driven by a single daemon thread. Four levels of 64 slots cover
+ * 64^4 ticks; a timeout sits in the level matching how far away it is and is cascaded one
+ * level down each time the level below completes a revolution. Scheduling and cancelling
+ * only link or unlink a node, so both are O(1) however many timeouts are pending.
+ * Tasks run on the wheel thread and must be short.
+ */
+public class TimerWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+    private final Thread thread;
+    private long currentTick;
+    private int pending;
+
+    /** A scheduled task. Cancelling after it has run has no effect. */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Returns true if the task was still pending and will now never run. */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (level < 0) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+    }
+
+    public TimerWheel(long tick, TimeUnit unit, String name) {
+        tickNanos = Math.max(1, unit.toNanos(tick));
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsed = System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay));
+        long deadline = (elapsed + tickNanos - 1) / tickNanos;
+        synchronized (this) {
+            // Never fire in the tick being processed; the earliest slot is the next one
+            Timeout timeout = new Timeout(task, Math.max(deadline, currentTick + 1));
+            link(timeout);
+            return timeout;
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    private void link(Timeout timeout) {
+        // Beyond the wheel's span, park in the farthest slot and re-link when it cascades
+        long target = Math.min(timeout.deadline, currentTick + MAX_SPAN - 1);
+        long delta = target - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((target >>> (SLOT_BITS * level)) & MASK);
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+        pending++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+        pending--;
+    }
+
+    /** Detaches a whole slot and returns its first node; the chain stays linked through next. */
+    private Timeout drain(int level, int slot) {
+        Timeout head = slots[level][slot];
+        slots[level][slot] = null;
+        for (Timeout t = head; t != null; t = t.next) {
+            t.level = -1;
+            pending--;
+        }
+        return head;
+    }
+
+    /** Advances one tick and collects the tasks that are now due. */
+    private void advance(List<Runnable> due) {
+        currentTick++;
+        int top = 1;
+        while (top < LEVELS && (currentTick & ((1L << (SLOT_BITS * top)) - 1)) == 0) {
+            top++;
+        }
+        // Cascade from the highest level that wrapped so each level refills the one below
+        for (int level = top - 1; level >= 1; level--) {
+            Timeout t = drain(level, (int) ((currentTick >>> (SLOT_BITS * level)) & MASK));
+            while (t != null) {
+                Timeout next = t.next;
+                link(t);
+                t = next;
+            }
+        }
+        Timeout t = drain(0, (int) (currentTick & MASK));
+        while (t != null) {
+            Timeout next = t.next;
+            t.prev = null;
+            t.next = null;
+            if (t.deadline <= currentTick) {
+                due.add(t.task);
+            } else {
+                link(t);
+            }
+            t = next;
+        }
+    }
+
+    private void run() {
+        List<Runnable> due = new ArrayList<>();
+        while (true) {
+            long now = System.nanoTime() - startNanos;
+            long nowTick = now / tickNanos;
+            synchronized (this) {
+                // Catch up after a late wake-up rather than drifting
+                while (currentTick < nowTick) {
+                    advance(due);
+                }
+            }
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("[TIMER] Task failed: " + e);
+                    e.printStackTrace();
+                }
+            }
+            due.clear();
+            long sleep = (nowTick + 1) * tickNanos - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.chess.server;
+
+/**
+ * Rate limiter holding up to a burst of tokens that refill at a steady rate. Each admitted
+ * event takes one token; an empty bucket refuses until enough time has passed.
+ */
+public class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, double capacity) {
+        if (ratePerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid token bucket: " + ratePerSecond + "/s, burst " + capacity);
+        }
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /** Takes a token if one is available. */
+    public synchronized boolean tryTake(long nowNanos) {
+        refill(nowNanos);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /** True once the bucket has refilled completely, when it is no different from a new one. */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = nowNanos;
+    }
+}
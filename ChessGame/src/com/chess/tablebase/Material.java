@@ -0,0 +1,161 @@
+package com.chess.tablebase;
+
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+
+/**
+ * A material signature such as "KQvK" plus the indexing scheme for its table.
+ * Pieces are ordered white king, black king, white extras, black extras. Squares use
+ * the board's row * 8 + col numbering. The white king is kept on files a-d by
+ * mirroring, which halves every table.
+ */
+final class Material {
+    static final String ORDER = "QRBNP";
+
+    final String name;
+    final PieceType[] types;
+    final PieceColor[] colors;
+    final int pieceCount;
+    final long positionsPerSide;
+
+    private Material(String name, PieceType[] types, PieceColor[] colors) {
+        this.name = name;
+        this.types = types;
+        this.colors = colors;
+        this.pieceCount = types.length;
+        this.positionsPerSide = 32L << (6 * (pieceCount - 1));
+    }
+
+    static Material parse(String signature) {
+        String normalized = normalize(signature);
+        int split = normalized.indexOf('v');
+        String white = normalized.substring(1, split);
+        String black = normalized.substring(split + 2);
+        int count = 2 + white.length() + black.length();
+        PieceType[] types = new PieceType[count];
+        PieceColor[] colors = new PieceColor[count];
+        types[0] = PieceType.KING;
+        colors[0] = PieceColor.WHITE;
+        types[1] = PieceType.KING;
+        colors[1] = PieceColor.BLACK;
+        int i = 2;
+        for (char c : white.toCharArray()) {
+            types[i] = typeOf(c);
+            colors[i++] = PieceColor.WHITE;
+        }
+        for (char c : black.toCharArray()) {
+            types[i] = typeOf(c);
+            colors[i++] = PieceColor.BLACK;
+        }
+        return new Material(normalized, types, colors);
+    }
+
+    static String normalize(String signature) {
+        String upper = signature.toUpperCase().replace('V', 'v');
+        int split = upper.indexOf('v');
+        if (split < 1 || upper.charAt(0) != 'K' || split + 1 >= upper.length() || upper.charAt(split + 1) != 'K') {
+            throw new IllegalArgumentException("Bad material signature: " + signature);
+        }
+        return "K" + sortSide(upper.substring(1, split)) + "vK" + sortSide(upper.substring(split + 2));
+    }
+
+    static String flip(String signature) {
+        int split = signature.indexOf('v');
+        return signature.substring(split + 1) + "v" + signature.substring(0, split);
+    }
+
+    static boolean isDrawnByMaterial(String signature) {
+        String n = normalize(signature);
+        return n.equals("KvK") || n.equals("KBvK") || n.equals("KNvK") ||
+               n.equals("KvKB") || n.equals("KvKN");
+    }
+
+    static String signatureOf(PieceType[] types, PieceColor[] colors, int[] squares, int count) {
+        StringBuilder white = new StringBuilder("K");
+        StringBuilder black = new StringBuilder("K");
+        for (int i = 0; i < count; i++) {
+            if (squares[i] < 0 || types[i] == PieceType.KING) {
+                continue;
+            }
+            (colors[i] == PieceColor.WHITE ? white : black).append(letterOf(types[i]));
+        }
+        return normalize(white + "v" + black);
+    }
+
+    static char letterOf(PieceType type) {
+        switch (type) {
+            case QUEEN: return 'Q';
+            case ROOK: return 'R';
+            case BISHOP: return 'B';
+            case KNIGHT: return 'N';
+            case PAWN: return 'P';
+            default: return 'K';
+        }
+    }
+
+    private static PieceType typeOf(char c) {
+        switch (c) {
+            case 'Q': return PieceType.QUEEN;
+            case 'R': return PieceType.ROOK;
+            case 'B': return PieceType.BISHOP;
+            case 'N': return PieceType.KNIGHT;
+            case 'P': return PieceType.PAWN;
+            default: throw new IllegalArgumentException("Bad piece letter: " + c);
+        }
+    }
+
+    private static String sortSide(String pieces) {
+        char[] chars = pieces.toCharArray();
+        for (char c : chars) {
+            if (ORDER.indexOf(c) < 0) {
+                throw new IllegalArgumentException("Bad piece letter: " + c);
+            }
+        }
+        for (int i = 1; i < chars.length; i++) {
+            for (int j = i; j > 0 && ORDER.indexOf(chars[j - 1]) > ORDER.indexOf(chars[j]); j--) {
+                char tmp = chars[j];
+                chars[j] = chars[j - 1];
+                chars[j - 1] = tmp;
+            }
+        }
+        return new String(chars);
+    }
+
+    boolean hasPawns() {
+        for (PieceType type : types) {
+            if (type == PieceType.PAWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Index of the position; squares are mirrored in place if the white king is on files e-h. */
+    long index(int[] squares, PieceColor sideToMove) {
+        if ((squares[0] & 7) >= 4) {
+            for (int i = 0; i < pieceCount; i++) {
+                squares[i] ^= 7;
+            }
+        }
+        long index = (squares[0] >> 3) * 4 + (squares[0] & 7);
+        for (int i = 1; i < pieceCount; i++) {
+            index = (index << 6) | squares[i];
+        }
+        return sideToMove == PieceColor.WHITE ? index : index + positionsPerSide;
+    }
+
+    PieceColor decode(long index, int[] squares) {
+        PieceColor sideToMove = PieceColor.WHITE;
+        if (index >= positionsPerSide) {
+            index -= positionsPerSide;
+            sideToMove = PieceColor.BLACK;
+        }
+        for (int i = pieceCount - 1; i >= 1; i--) {
+            squares[i] = (int) (index & 63);
+            index >>= 6;
+        }
+        int half = (int) index;
+        squares[0] = (half >> 2) * 8 + (half & 3);
+        return sideToMove;
+    }
+}
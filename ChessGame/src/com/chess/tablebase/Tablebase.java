@@ -0,0 +1,188 @@
+package com.chess.tablebase;
+
+import com.chess.model.ChessBoard;
+import com.chess.model.ChessPiece;
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Probes memory-mapped endgame tables produced by {@link TablebaseGenerator}.
+ * Results are from the side to move's point of view: positive values are wins
+ * with that many plies to mate, negative values are losses (-1 means checkmated),
+ * zero is a draw.
+ */
+public class Tablebase implements AutoCloseable {
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final int MAX_PIECES = 4;
+
+    static final int MAGIC = 0x43485442; // "CHTB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final byte ILLEGAL = Byte.MIN_VALUE;
+
+    private final Map<String, Table> tables = new HashMap<>();
+
+    private static class Table {
+        final Material material;
+        final FileChannel channel;
+        final MappedByteBuffer data;
+
+        Table(Material material, FileChannel channel, MappedByteBuffer data) {
+            this.material = material;
+            this.channel = channel;
+            this.data = data;
+        }
+    }
+
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")) {
+                for (Path file : files) {
+                    tablebase.load(file);
+                }
+            }
+        }
+        System.out.println("[TABLEBASE] Loaded " + tablebase.tables.size() + " tables from " + directory);
+        return tablebase;
+    }
+
+    void load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        Material material = Material.parse(name.substring(0, name.length() - 3));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long expected = HEADER_SIZE + 2 * material.positionsPerSide;
+            if (channel.size() != expected) {
+                throw new IOException("Bad table size for " + file);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getInt(8) != material.pieceCount) {
+                throw new IOException("Not a valid table: " + file);
+            }
+            tables.put(material.name, new Table(material, channel, data));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean hasTable(String signature) {
+        return tables.containsKey(Material.normalize(signature));
+    }
+
+    public static boolean isWin(int result) {
+        return result != UNKNOWN && result > 0;
+    }
+
+    public static boolean isLoss(int result) {
+        return result != UNKNOWN && result < 0;
+    }
+
+    public static boolean isDraw(int result) {
+        return result == 0;
+    }
+
+    public static int distanceToMate(int result) {
+        if (result == UNKNOWN || result == 0) {
+            return -1;
+        }
+        return result > 0 ? result : -result - 1;
+    }
+
+    public int probe(ChessBoard board) {
+        if (board.getCastlingRights() != 0) {
+            return UNKNOWN;
+        }
+        PieceType[] types = new PieceType[MAX_PIECES];
+        PieceColor[] colors = new PieceColor[MAX_PIECES];
+        int[] squares = new int[MAX_PIECES];
+        int count = 0;
+        boolean whitePawns = false;
+        boolean blackPawns = false;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = board.getPiece(row, col);
+                if (piece == null) {
+                    continue;
+                }
+                if (count == MAX_PIECES) {
+                    return UNKNOWN;
+                }
+                types[count] = piece.getType();
+                colors[count] = piece.getColor();
+                squares[count] = row * 8 + col;
+                if (piece.getType() == PieceType.PAWN) {
+                    if (piece.getColor() == PieceColor.WHITE) {
+                        whitePawns = true;
+                    } else {
+                        blackPawns = true;
+                    }
+                }
+                count++;
+            }
+        }
+        // Tables do not model en passant, which only matters with pawns on both sides
+        if (whitePawns && blackPawns && board.getEnPassantTargetCol() != -1) {
+            return UNKNOWN;
+        }
+        return probe(types, colors, squares, count, board.getCurrentTurn());
+    }
+
+    /**
+     * Probes an arbitrary piece list. Entries with a negative square are treated as captured.
+     */
+    public int probe(PieceType[] types, PieceColor[] colors, int[] squares, int count, PieceColor sideToMove) {
+        String signature = Material.signatureOf(types, colors, squares, count);
+        if (Material.isDrawnByMaterial(signature)) {
+            return 0;
+        }
+        Table table = tables.get(signature);
+        boolean flipped = false;
+        if (table == null) {
+            table = tables.get(Material.normalize(Material.flip(signature)));
+            flipped = true;
+        }
+        if (table == null) {
+            return UNKNOWN;
+        }
+
+        Material material = table.material;
+        int[] ordered = new int[material.pieceCount];
+        boolean[] used = new boolean[count];
+        for (int slot = 0; slot < material.pieceCount; slot++) {
+            PieceColor wanted = flipped ? opposite(material.colors[slot]) : material.colors[slot];
+            for (int i = 0; i < count; i++) {
+                if (!used[i] && squares[i] >= 0 && types[i] == material.types[slot] && colors[i] == wanted) {
+                    used[i] = true;
+                    ordered[slot] = flipped ? squares[i] ^ 56 : squares[i];
+                    break;
+                }
+            }
+        }
+        PieceColor stm = flipped ? opposite(sideToMove) : sideToMove;
+        byte value = table.data.get(HEADER_SIZE + (int) material.index(ordered, stm));
+        return value == ILLEGAL ? UNKNOWN : value;
+    }
+
+    static PieceColor opposite(PieceColor color) {
+        return color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Table table : tables.values()) {
+            table.channel.close();
+        }
+        tables.clear();
+    }
+}
@@ -0,0 +1,491 @@
+package com.chess.tablebase;
+
+import com.chess.model.PieceColor;
+import com.chess.model.PieceType;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds distance-to-mate tables by retrograde analysis. Checkmates are seeded first,
+ * then each ply marks the predecessors of the previous ply: positions that can reach a
+ * loss are wins, positions whose every move reaches a win are losses. Captures and
+ * promotions leave the table and are resolved from previously generated smaller tables.
+ * Castling and en passant are not modelled.
+ */
+public class TablebaseGenerator {
+    public static final String[] DEFAULT_TABLES = {
+        "KQvK", "KRvK", "KPvK", "KBNvK", "KBBvK", "KQvKR", "KRvKB", "KRvKN"
+    };
+
+    private static final int MAX_DEPTH = 126;
+    private static final int[][] KING_STEPS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] KNIGHT_STEPS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] ROOK_DIRS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_DIRS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final int[][] QUEEN_DIRS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    private final Path directory;
+    private final Tablebase tablebase;
+
+    public TablebaseGenerator(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.tablebase = Tablebase.open(directory);
+    }
+
+    public void generate(String signature) throws IOException {
+        String name = Material.normalize(signature);
+        if (Material.isDrawnByMaterial(name) || tablebase.hasTable(name) || tablebase.hasTable(Material.flip(name))) {
+            return;
+        }
+        Material material = Material.parse(name);
+        if (material.pieceCount > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("At most " + Tablebase.MAX_PIECES + " pieces supported: " + name);
+        }
+        for (String dependency : dependencies(material)) {
+            generate(dependency);
+        }
+
+        long start = System.currentTimeMillis();
+        System.out.println("[TABLEBASE] Generating " + name + " (" + 2 * material.positionsPerSide + " positions)");
+        byte[] values = new Solver(material).solve();
+
+        Path file = directory.resolve(name + ".tb");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(Tablebase.VERSION);
+            out.writeInt(material.pieceCount);
+            out.writeInt(0);
+            out.write(values);
+        }
+        tablebase.load(file);
+        System.out.println("[TABLEBASE] Wrote " + file + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static List<String> dependencies(Material material) {
+        List<String> result = new ArrayList<>();
+        int[] squares = new int[material.pieceCount];
+        PieceType[] types = material.types.clone();
+        for (int i = 2; i < material.pieceCount; i++) {
+            squares[i] = -1;
+            result.add(Material.signatureOf(types, material.colors, squares, material.pieceCount));
+            squares[i] = 0;
+            if (types[i] == PieceType.PAWN) {
+                for (PieceType promotion : PROMOTIONS) {
+                    types[i] = promotion;
+                    result.add(Material.signatureOf(types, material.colors, squares, material.pieceCount));
+                }
+                types[i] = PieceType.PAWN;
+            }
+        }
+        return result;
+    }
+
+    private class Solver {
+        private final Material material;
+        private final int count;
+        private final PieceType[] types;
+        private final PieceColor[] colors;
+        private final long size;
+        private final byte[] values;
+        private final byte[] exitWin;
+        private final byte[] exitLoss;
+
+        private final int[] squares;
+        private final int[] work;
+        private final int[] scratch;
+        private final int[] targets = new int[32];
+        private final int[] moveTargets = new int[32];
+
+        // Results of the last scanMoves call
+        private int legalMoves;
+        private int bestExitWin;
+        private int worstExitLoss;
+        private boolean nonLosingExit;
+        private boolean allChildrenWin;
+
+        Solver(Material material) {
+            this.material = material;
+            this.count = material.pieceCount;
+            this.types = material.types.clone();
+            this.colors = material.colors;
+            this.size = 2 * material.positionsPerSide;
+            this.values = new byte[(int) size];
+            this.exitWin = new byte[(int) size];
+            this.exitLoss = new byte[(int) size];
+            this.squares = new int[count];
+            this.work = new int[count];
+            this.scratch = new int[count];
+        }
+
+        byte[] solve() {
+            int maxExit = 0;
+            for (int index = 0; index < size; index++) {
+                PieceColor stm = material.decode(index, squares);
+                if (!isLegal(squares, stm)) {
+                    values[index] = Tablebase.ILLEGAL;
+                    continue;
+                }
+                scanMoves(squares, stm, 0);
+                if (legalMoves == 0) {
+                    values[index] = isAttacked(squares, squares[kingIndex(stm)], Tablebase.opposite(stm)) ? loss(0) : 0;
+                    continue;
+                }
+                exitWin[index] = (byte) bestExitWin;
+                exitLoss[index] = (byte) (nonLosingExit ? -1 : worstExitLoss);
+                maxExit = Math.max(maxExit, Math.max(bestExitWin, worstExitLoss));
+            }
+
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                boolean winPly = (depth & 1) == 1;
+                byte previous = winPly ? loss(depth - 1) : win(depth - 1);
+                long found = 0;
+                for (int index = 0; index < size; index++) {
+                    byte value = values[index];
+                    if (value == previous) {
+                        found += markPredecessors(index, depth, winPly);
+                    } else if (value == 0) {
+                        if (winPly && exitWin[index] == depth) {
+                            values[index] = win(depth);
+                            found++;
+                        } else if (!winPly && exitLoss[index] == depth && isLoss(index, depth)) {
+                            values[index] = loss(depth);
+                            found++;
+                        }
+                    }
+                }
+                if (found == 0 && depth >= maxExit) {
+                    break;
+                }
+            }
+            return values;
+        }
+
+        private int markPredecessors(int index, int depth, boolean winPly) {
+            PieceColor stm = material.decode(index, squares);
+            PieceColor mover = Tablebase.opposite(stm);
+            int marked = 0;
+            for (int i = 0; i < count; i++) {
+                if (colors[i] != mover) {
+                    continue;
+                }
+                int from = squares[i];
+                int n = unmoveTargets(squares, i, targets);
+                for (int t = 0; t < n; t++) {
+                    squares[i] = targets[t];
+                    System.arraycopy(squares, 0, scratch, 0, count);
+                    int predecessor = (int) material.index(scratch, mover);
+                    squares[i] = from;
+                    if (values[predecessor] != 0) {
+                        continue;
+                    }
+                    if (winPly) {
+                        values[predecessor] = win(depth);
+                        marked++;
+                    } else if (isLoss(predecessor, depth)) {
+                        values[predecessor] = loss(depth);
+                        marked++;
+                    }
+                }
+            }
+            return marked;
+        }
+
+        private boolean isLoss(int index, int depth) {
+            PieceColor stm = material.decode(index, work);
+            scanMoves(work, stm, depth);
+            return legalMoves > 0 && allChildrenWin && !nonLosingExit && worstExitLoss <= depth;
+        }
+
+        /**
+         * Visits every legal move. With depth > 0 it also checks whether all in-table
+         * children are already won for the opponent within depth - 1 plies.
+         */
+        private void scanMoves(int[] s, PieceColor stm, int depth) {
+            legalMoves = 0;
+            bestExitWin = 0;
+            worstExitLoss = 0;
+            nonLosingExit = false;
+            allChildrenWin = true;
+            PieceColor opponent = Tablebase.opposite(stm);
+            for (int i = 0; i < count; i++) {
+                if (colors[i] != stm || s[i] < 0) {
+                    continue;
+                }
+                int from = s[i];
+                int n = moveTargets(s, i, moveTargets);
+                for (int t = 0; t < n; t++) {
+                    int to = moveTargets[t];
+                    int captured = occupant(s, to);
+                    s[i] = to;
+                    if (captured >= 0) {
+                        s[captured] = -1;
+                    }
+                    if (!isAttacked(s, s[kingIndex(stm)], opponent)) {
+                        legalMoves++;
+                        boolean promotes = types[i] == PieceType.PAWN && (to >> 3 == 0 || to >> 3 == 7);
+                        if (promotes) {
+                            for (PieceType promotion : PROMOTIONS) {
+                                types[i] = promotion;
+                                recordExit(tablebase.probe(types, colors, s, count, opponent));
+                            }
+                            types[i] = PieceType.PAWN;
+                        } else if (captured >= 0) {
+                            recordExit(tablebase.probe(types, colors, s, count, opponent));
+                        } else if (depth > 0 && allChildrenWin) {
+                            System.arraycopy(s, 0, scratch, 0, count);
+                            byte child = values[(int) material.index(scratch, opponent)];
+                            if (child <= 0 || child > depth - 1) {
+                                allChildrenWin = false;
+                            }
+                        }
+                    }
+                    s[i] = from;
+                    if (captured >= 0) {
+                        s[captured] = to;
+                    }
+                }
+            }
+        }
+
+        private void recordExit(int child) {
+            if (child == Tablebase.UNKNOWN || child == 0) {
+                nonLosingExit = true;
+            } else if (child < 0) {
+                int plies = -child;
+                nonLosingExit = true;
+                if (bestExitWin == 0 || plies < bestExitWin) {
+                    bestExitWin = plies;
+                }
+            } else {
+                worstExitLoss = Math.max(worstExitLoss, child + 1);
+            }
+        }
+
+        private int moveTargets(int[] s, int i, int[] out) {
+            int from = s[i];
+            int row = from >> 3;
+            int col = from & 7;
+            switch (types[i]) {
+                case KING:
+                    return steps(s, i, KING_STEPS, out, true);
+                case KNIGHT:
+                    return steps(s, i, KNIGHT_STEPS, out, true);
+                case ROOK:
+                    return rays(s, i, ROOK_DIRS, out, true);
+                case BISHOP:
+                    return rays(s, i, BISHOP_DIRS, out, true);
+                case QUEEN:
+                    return rays(s, i, QUEEN_DIRS, out, true);
+                case PAWN:
+                    int n = 0;
+                    int direction = colors[i] == PieceColor.WHITE ? -1 : 1;
+                    int next = row + direction;
+                    if (next < 0 || next > 7) {
+                        return 0;
+                    }
+                    if (occupant(s, next * 8 + col) < 0) {
+                        out[n++] = next * 8 + col;
+                        int startRow = colors[i] == PieceColor.WHITE ? 6 : 1;
+                        int jump = row + 2 * direction;
+                        if (row == startRow && occupant(s, jump * 8 + col) < 0) {
+                            out[n++] = jump * 8 + col;
+                        }
+                    }
+                    for (int dc = -1; dc <= 1; dc += 2) {
+                        int c = col + dc;
+                        if (c < 0 || c > 7) {
+                            continue;
+                        }
+                        int victim = occupant(s, next * 8 + c);
+                        if (victim >= 0 && colors[victim] != colors[i] && types[victim] != PieceType.KING) {
+                            out[n++] = next * 8 + c;
+                        }
+                    }
+                    return n;
+            }
+            return 0;
+        }
+
+        private int unmoveTargets(int[] s, int i, int[] out) {
+            int from = s[i];
+            int row = from >> 3;
+            int col = from & 7;
+            switch (types[i]) {
+                case KING:
+                    return steps(s, i, KING_STEPS, out, false);
+                case KNIGHT:
+                    return steps(s, i, KNIGHT_STEPS, out, false);
+                case ROOK:
+                    return rays(s, i, ROOK_DIRS, out, false);
+                case BISHOP:
+                    return rays(s, i, BISHOP_DIRS, out, false);
+                case QUEEN:
+                    return rays(s, i, QUEEN_DIRS, out, false);
+                case PAWN:
+                    int n = 0;
+                    int back = colors[i] == PieceColor.WHITE ? 1 : -1;
+                    int previous = row + back;
+                    if (previous < 1 || previous > 6 || occupant(s, previous * 8 + col) >= 0) {
+                        return 0;
+                    }
+                    out[n++] = previous * 8 + col;
+                    int doubleRow = colors[i] == PieceColor.WHITE ? 4 : 3;
+                    int start = row + 2 * back;
+                    if (row == doubleRow && occupant(s, start * 8 + col) < 0) {
+                        out[n++] = start * 8 + col;
+                    }
+                    return n;
+            }
+            return 0;
+        }
+
+        private int steps(int[] s, int i, int[][] deltas, int[] out, boolean captures) {
+            int row = s[i] >> 3;
+            int col = s[i] & 7;
+            int n = 0;
+            for (int[] d : deltas) {
+                int r = row + d[0];
+                int c = col + d[1];
+                if (r < 0 || r > 7 || c < 0 || c > 7) {
+                    continue;
+                }
+                int other = occupant(s, r * 8 + c);
+                if (other < 0 || (captures && colors[other] != colors[i] && types[other] != PieceType.KING)) {
+                    out[n++] = r * 8 + c;
+                }
+            }
+            return n;
+        }
+
+        private int rays(int[] s, int i, int[][] directions, int[] out, boolean captures) {
+            int row = s[i] >> 3;
+            int col = s[i] & 7;
+            int n = 0;
+            for (int[] d : directions) {
+                int r = row + d[0];
+                int c = col + d[1];
+                while (r >= 0 && r <= 7 && c >= 0 && c <= 7) {
+                    int other = occupant(s, r * 8 + c);
+                    if (other >= 0) {
+                        if (captures && colors[other] != colors[i] && types[other] != PieceType.KING) {
+                            out[n++] = r * 8 + c;
+                        }
+                        break;
+                    }
+                    out[n++] = r * 8 + c;
+                    r += d[0];
+                    c += d[1];
+                }
+            }
+            return n;
+        }
+
+        private boolean isLegal(int[] s, PieceColor stm) {
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    if (s[i] == s[j]) {
+                        return false;
+                    }
+                }
+                if (types[i] == PieceType.PAWN && (s[i] >> 3 == 0 || s[i] >> 3 == 7)) {
+                    return false;
+                }
+            }
+            PieceColor waiting = Tablebase.opposite(stm);
+            return !isAttacked(s, s[kingIndex(waiting)], stm);
+        }
+
+        private boolean isAttacked(int[] s, int target, PieceColor by) {
+            int tr = target >> 3;
+            int tc = target & 7;
+            for (int i = 0; i < count; i++) {
+                if (colors[i] != by || s[i] < 0) {
+                    continue;
+                }
+                int fr = s[i] >> 3;
+                int fc = s[i] & 7;
+                int dr = tr - fr;
+                int dc = tc - fc;
+                int adr = Math.abs(dr);
+                int adc = Math.abs(dc);
+                switch (types[i]) {
+                    case KING:
+                        if (Math.max(adr, adc) == 1) return true;
+                        break;
+                    case KNIGHT:
+                        if (adr * adc == 2) return true;
+                        break;
+                    case PAWN:
+                        if (adc == 1 && dr == (by == PieceColor.WHITE ? -1 : 1)) return true;
+                        break;
+                    case ROOK:
+                        if ((dr == 0) != (dc == 0) && isClear(s, fr, fc, tr, tc)) return true;
+                        break;
+                    case BISHOP:
+                        if (adr == adc && adr != 0 && isClear(s, fr, fc, tr, tc)) return true;
+                        break;
+                    case QUEEN:
+                        if (((dr == 0) != (dc == 0) || (adr == adc && adr != 0)) && isClear(s, fr, fc, tr, tc)) return true;
+                        break;
+                }
+            }
+            return false;
+        }
+
+        private boolean isClear(int[] s, int fromRow, int fromCol, int toRow, int toCol) {
+            int rowDir = Integer.compare(toRow, fromRow);
+            int colDir = Integer.compare(toCol, fromCol);
+            int r = fromRow + rowDir;
+            int c = fromCol + colDir;
+            while (r != toRow || c != toCol) {
+                if (occupant(s, r * 8 + c) >= 0) {
+                    return false;
+                }
+                r += rowDir;
+                c += colDir;
+            }
+            return true;
+        }
+
+        private int occupant(int[] s, int square) {
+            for (int i = 0; i < count; i++) {
+                if (s[i] == square) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int kingIndex(PieceColor color) {
+            return color == PieceColor.WHITE ? 0 : 1;
+        }
+
+        private byte win(int plies) {
+            return (byte) plies;
+        }
+
+        private byte loss(int plies) {
+            return (byte) -(plies + 1);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TablebaseGenerator <directory> [signature...]");
+            System.exit(1);
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]));
+        String[] signatures = args.length > 1 ? java.util.Arrays.copyOfRange(args, 1, args.length) : DEFAULT_TABLES;
+        for (String signature : signatures) {
+            generator.generate(signature);
+        }
+    }
+}